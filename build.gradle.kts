@@ -24,6 +24,7 @@ repositories {
 }
 
 dependencies {
+    testImplementation("junit:junit:4.13.2")
 }
 
 
@@ -0,0 +1,160 @@
+package com.github.yunabraska.githubworkflow.completion;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.Properties;
+
+import static com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils.readFileAsync;
+import static java.util.Optional.ofNullable;
+
+//CACHED DOWNLOAD WITH ITS VALIDATORS [ETag] [Last-Modified] [sha] - validators live next to the content in [<file>.meta]
+//the file time is the last validation, a [304 Not Modified] only bumps it
+public class CacheEntry {
+
+    private static final String META_SUFFIX = ".meta";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last-modified";
+    private static final String KEY_SHA = "sha";
+    private static final Logger LOG = Logger.getInstance(CacheEntry.class);
+
+    private final String content;
+    private final String etag;
+    private final String lastModified;
+    //GIT BLOB ID from GraphQL - the validator of batched entries, which have no [ETag] and no [Last-Modified]
+    private final String sha;
+    private final boolean notModified;
+    //LAST CONFIRMATION BY THE SERVER - the file time for cached entries
+    private final long validated;
+    //SERVED FROM THE CACHE AFTER A FAILED DOWNLOAD
+    private final boolean stale;
+
+    public CacheEntry(final String content, final String etag, final String lastModified, final String sha) {
+        this(content, etag, lastModified, sha, false, System.currentTimeMillis(), false);
+    }
+
+    private CacheEntry(final String content, final String etag, final String lastModified, final String sha, final boolean notModified, final long validated, final boolean stale) {
+        this.content = content;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.sha = sha;
+        this.notModified = notModified;
+        this.validated = validated;
+        this.stale = stale;
+    }
+
+    public static Optional<CacheEntry> cacheEntryOf(final Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        final Properties meta = new Properties();
+        final Path metaPath = metaPath(path);
+        if (Files.exists(metaPath)) {
+            try (final Reader reader = Files.newBufferedReader(metaPath)) {
+                meta.load(reader);
+            } catch (final IOException e) {
+                LOG.warn("Cache read failed for [" + metaPath + "] message [" + e.getMessage() + "]");
+            }
+        }
+        return Optional.of(new CacheEntry(readFileAsync(path), meta.getProperty(KEY_ETAG), meta.getProperty(KEY_LAST_MODIFIED), meta.getProperty(KEY_SHA), false, lastModifiedOf(path), false));
+    }
+
+    private static long lastModifiedOf(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (final IOException e) {
+            return 0;
+        }
+    }
+
+    public static boolean isFresh(final Path path, final long expirationTime) {
+        try {
+            return Files.exists(path) && (expirationTime < 1 || Files.getLastModifiedTime(path).toMillis() > System.currentTimeMillis() - expirationTime);
+        } catch (final IOException e) {
+            LOG.warn("Cache read failed for [" + path + "] message [" + e.getMessage() + "]");
+            return false;
+        }
+    }
+
+    public String content() {
+        return content;
+    }
+
+    public String etag() {
+        return etag;
+    }
+
+    public String lastModified() {
+        return lastModified;
+    }
+
+    public String sha() {
+        return sha;
+    }
+
+    //SAME CONTENT AS THE CACHED ENTRY [304]
+    public boolean notModified() {
+        return notModified;
+    }
+
+    public long validated() {
+        return validated;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    public CacheEntry asNotModified() {
+        return new CacheEntry(content, etag, lastModified, sha, true, System.currentTimeMillis(), false);
+    }
+
+    public CacheEntry asStale() {
+        return new CacheEntry(content, etag, lastModified, sha, false, validated, true);
+    }
+
+    //NOT MODIFIED: touch only - else content and validators
+    public String writeTo(final Path path) {
+        try {
+            if (notModified) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                return content;
+            }
+            Files.createDirectories(path.getParent());
+            Files.write(path, content.getBytes());
+            final Properties meta = new Properties();
+            ofNullable(etag).ifPresent(value -> meta.setProperty(KEY_ETAG, value));
+            ofNullable(lastModified).ifPresent(value -> meta.setProperty(KEY_LAST_MODIFIED, value));
+            ofNullable(sha).ifPresent(value -> meta.setProperty(KEY_SHA, value));
+            try (final Writer writer = Files.newBufferedWriter(metaPath(path))) {
+                meta.store(writer, null);
+            }
+        } catch (final IOException e) {
+            LOG.warn("Cache failed for [" + path + "] message [" + e.getMessage() + "]");
+        }
+        return content;
+    }
+
+    public static void delete(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(metaPath(path));
+        } catch (final IOException ignored) {
+            // ignored
+        }
+    }
+
+    private static Path metaPath(final Path path) {
+        return path.resolveSibling(path.getFileName() + META_SUFFIX);
+    }
+}
@@ -2,7 +2,7 @@ package com.github.yunabraska.githubworkflow.completion;
 
 import com.github.yunabraska.githubworkflow.config.NodeIcon;
 import com.github.yunabraska.githubworkflow.model.CompletionItem;
-import com.github.yunabraska.githubworkflow.model.GitHubAction;
+import com.github.yunabraska.githubworkflow.model.ActionRegistry;
 import com.github.yunabraska.githubworkflow.model.YamlElement;
 import com.intellij.codeInsight.completion.CompletionContributor;
 import com.intellij.codeInsight.completion.CompletionParameters;
@@ -35,6 +35,8 @@ import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_NODE;
 import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_OUTPUT;
 import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_RUNNER;
 import static com.github.yunabraska.githubworkflow.model.CompletionItem.*;
+import static com.github.yunabraska.githubworkflow.model.WorkflowContext.getClosestElement;
+import static com.github.yunabraska.githubworkflow.model.YamlElement.createYamlElement;
 import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.yamlOf;
 import static java.util.Collections.singletonList;
 import static java.util.Optional.ofNullable;
@@ -54,10 +56,10 @@ public class CodeCompletionService extends CompletionContributor {
                     @NotNull final ProcessingContext processingContext,
                     @NotNull final CompletionResultSet resultSet
             ) {
-                getWorkflowFile(parameters.getPosition()).map(path -> yamlOf(parameters.getPosition())).map(YamlElement::context).ifPresent(context -> {
+                getWorkflowFile(parameters.getPosition()).map(path -> yamlOf(parameters.getPosition(), parameters.getOffset())).ifPresent(scope -> {
                     final Project project = Optional.of(parameters.getOriginalFile()).map(PsiElement::getProject).orElse(null);
                     final int offset = parameters.getOffset();
-                    final YamlElement position = context.getClosestElement(offset).orElse(new YamlElement(-1, -1, null, null, false));
+                    final YamlElement position = getClosestElement(scope, offset).orElseGet(() -> createYamlElement(-1, -1, null, null));
                     final String[] prefix = new String[]{""};
                     final Optional<String[]> caretBracketItem = Optional.of(position).filter(p -> p.startIndexAbs() > -1).map(pos -> getCaretBracketItem(pos, offset, prefix)).orElseGet(() -> Optional.of(prefix));
                     caretBracketItem.ifPresent(cbi -> {
@@ -90,7 +92,7 @@ public class CodeCompletionService extends CompletionContributor {
                                     .map(YamlElement::parent)
                                     .flatMap(step -> step.child(FIELD_USES))
                                     .map(YamlElement::textOrChildTextNoQuotes)
-                                    .map(GitHubAction::getGitHubAction)
+                                    .map(ActionRegistry::actionOf)
                                     .map(action -> action.inputs(project));
                             withCompletion.ifPresent(map -> addLookupElements(resultSet.withPrefixMatcher(getDefaultPrefix(parameters)), map, NodeIcon.ICON_INPUT, ':'));
                         }
@@ -138,7 +140,7 @@ public class CodeCompletionService extends CompletionContributor {
         switch (cbi[0]) {
             case FIELD_STEPS -> completionItemMap.put(i, listSteps(position));
             case FIELD_JOBS -> completionItemMap.put(i, listJobs(position));
-            case FIELD_ENVS -> completionItemMap.put(i, listEnvs(position, offset));
+            case FIELD_ENVS -> completionItemMap.put(i, listEnvs(position));
             case FIELD_GITHUB ->
                     completionItemMap.put(i, completionItemsOf(DEFAULT_VALUE_MAP.get(FIELD_GITHUB).get(), ICON_ENV));
             case FIELD_RUNNER ->
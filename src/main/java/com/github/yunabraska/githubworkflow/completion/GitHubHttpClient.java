@@ -0,0 +1,194 @@
+package com.github.yunabraska.githubworkflow.completion;
+
+import com.github.yunabraska.githubworkflow.model.ActionRef;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+//NON-BLOCKING FETCH: one shared HTTP/2 client, connections get multiplexed per host - no thread waits for a response
+//base URIs are configurable e.g. for a local stand-in server
+public final class GitHubHttpClient {
+
+    public static final URI RAW_BASE = URI.create("https://raw.githubusercontent.com");
+    public static final URI API_BASE = URI.create("https://api.github.com");
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Logger LOG = Logger.getInstance(GitHubHttpClient.class);
+    private static volatile GitHubHttpClient instance;
+
+    private final HttpClient client;
+    private final URI rawBase;
+    private final URI apiBase;
+    private final String userAgent;
+
+    public GitHubHttpClient(final URI rawBase, final URI apiBase, final String userAgent) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.rawBase = rawBase;
+        this.apiBase = apiBase;
+        this.userAgent = userAgent;
+    }
+
+    //SHARED CLIENT
+    public static GitHubHttpClient gitHubHttpClient() {
+        GitHubHttpClient result = instance;
+        if (result == null) {
+            synchronized (GitHubHttpClient.class) {
+                result = instance;
+                if (result == null) {
+                    result = new GitHubHttpClient(RAW_BASE, API_BASE, userAgentOf());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public URI rawBase() {
+        return rawBase;
+    }
+
+    public URI apiBase() {
+        return apiBase;
+    }
+
+    //[action.yml] OR WORKFLOW FILE - null if not found, [token] and [cached] are optional
+    public CompletableFuture<CacheEntry> fetchRaw(final ActionRef ref, final String token, final CacheEntry cached) {
+        return ofNullable(ref).map(ActionRef::rawPath)
+                .map(path -> fetch(rawBase.resolve(path), token, cached))
+                .orElseGet(() -> CompletableFuture.completedFuture(null));
+    }
+
+    //ONE GRAPHQL QUERY FOR MANY FILES [a0: repository(owner, name) { object(expression: "ref:path") }] - null on errors, blob id as [sha]
+    //needs a token, refs without a blob are missing in the result
+    public CompletableFuture<Map<ActionRef, CacheEntry>> fetchBlobs(final List<ActionRef> refs, final String token) {
+        return query(refs, token, "oid text", blob -> ofNullable(member(blob, "text"))
+                .filter(JsonElement::isJsonPrimitive)
+                .map(text -> new CacheEntry(text.getAsString(), null, null, oidOf(blob)))
+                .orElse(null));
+    }
+
+    //BLOB IDS ONLY - same query without the content, revalidates entries from [fetchBlobs] which have no HTTP validators
+    public CompletableFuture<Map<ActionRef, String>> fetchBlobIds(final List<ActionRef> refs, final String token) {
+        return query(refs, token, "oid", GitHubHttpClient::oidOf);
+    }
+
+    private <T> CompletableFuture<Map<ActionRef, T>> query(final List<ActionRef> refs, final String token, final String fields, final Function<JsonElement, T> valueOf) {
+        final StringBuilder query = new StringBuilder("query {");
+        for (int i = 0; i < refs.size(); i++) {
+            final ActionRef ref = refs.get(i);
+            query.append(" a").append(i)
+                    .append(": repository(owner: ").append(quote(ref.owner()))
+                    .append(", name: ").append(quote(ref.repo()))
+                    .append(") { object(expression: ").append(quote(ref.ref() + ":" + ref.filePath().substring(1)))
+                    .append(") { ... on Blob { ").append(fields).append(" } } }");
+        }
+        final JsonObject body = new JsonObject();
+        body.addProperty("query", query.append(" }").toString());
+        final URI uri = apiBase.resolve("/graphql");
+        return send(request(uri, token).header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body.toString())).build())
+                .thenApply(response -> response.statusCode() == 200 ? blobsOf(refs, response.body(), valueOf) : null)
+                .exceptionally(e -> {
+                    LOG.warn("Download failed for [" + uri + "] message [" + e.getMessage() + "]");
+                    return null;
+                });
+    }
+
+    //PLAIN GET - null body for non 2xx and on errors
+    public CompletableFuture<String> fetch(final URI uri, final String token) {
+        return fetch(uri, token, null).thenApply(entry -> entry == null ? null : entry.content());
+    }
+
+    //CONDITIONAL GET: [If-None-Match] [If-Modified-Since] from [cached] - [304] gives the cached entry as not modified
+    public CompletableFuture<CacheEntry> fetch(final URI uri, final String token, final CacheEntry cached) {
+        final HttpRequest.Builder request = request(uri, token).GET();
+        ofNullable(cached).map(CacheEntry::etag).ifPresent(etag -> request.header("If-None-Match", etag));
+        ofNullable(cached).map(CacheEntry::lastModified).ifPresent(lastModified -> request.header("If-Modified-Since", lastModified));
+        return send(request.build())
+                .thenApply(response -> {
+                    if (response.statusCode() == 304 && cached != null) {
+                        return cached.asNotModified();
+                    }
+                    return response.statusCode() / 100 == 2
+                            ? new CacheEntry(response.body(), response.headers().firstValue("ETag").orElse(null), response.headers().firstValue("Last-Modified").orElse(null), null)
+                            : null;
+                })
+                .exceptionally(e -> {
+                    LOG.warn("Download failed for [" + uri + "] message [" + e.getMessage() + "]");
+                    return null;
+                });
+    }
+
+    public CompletableFuture<HttpResponse<String>> send(final HttpRequest request) {
+        LOG.info("Download [" + request.uri() + "]");
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    public HttpRequest.Builder request(final URI uri, final String token) {
+        final HttpRequest.Builder result = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", userAgent)
+                .header("Client-Name", "GitHub Workflow Plugin");
+        if (token != null) {
+            result.header("Authorization", "Bearer " + token);
+        }
+        return result;
+    }
+
+    //PARTIAL RESULTS: aliases with errors or without a blob [object: null] are missing
+    private static <T> Map<ActionRef, T> blobsOf(final List<ActionRef> refs, final String body, final Function<JsonElement, T> valueOf) {
+        final JsonElement data = member(JsonParser.parseString(body), "data");
+        final Map<ActionRef, T> result = new HashMap<>();
+        for (int i = 0; i < refs.size(); i++) {
+            final JsonElement blob = member(member(data, "a" + i), "object");
+            final T value = blob != null && blob.isJsonObject() ? valueOf.apply(blob) : null;
+            if (value != null) {
+                result.put(refs.get(i), value);
+            }
+        }
+        return result;
+    }
+
+    private static String oidOf(final JsonElement blob) {
+        final JsonElement oid = member(blob, "oid");
+        return oid != null && oid.isJsonPrimitive() ? oid.getAsString() : null;
+    }
+
+    private static JsonElement member(final JsonElement element, final String name) {
+        return element != null && element.isJsonObject() ? element.getAsJsonObject().get(name) : null;
+    }
+
+    //JSON STRINGS ARE VALID GRAPHQL STRINGS
+    private static String quote(final String value) {
+        return new JsonPrimitive(value).toString();
+    }
+
+    private static String userAgentOf() {
+        try {
+            final ApplicationInfo applicationInfo = ApplicationInfo.getInstance();
+            return applicationInfo.getBuild().getProductCode() + "/" + applicationInfo.getFullVersion();
+        } catch (final Exception e) {
+            return "GitHub Workflow Plugin";
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.github.yunabraska.githubworkflow.completion;
 
 import com.github.yunabraska.githubworkflow.config.NodeIcon;
-import com.github.yunabraska.githubworkflow.model.GitHubAction;
+import com.github.yunabraska.githubworkflow.model.ActionRef;
+import com.github.yunabraska.githubworkflow.model.ExpressionText;
 import com.github.yunabraska.githubworkflow.model.YamlElement;
 import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionResultSet;
@@ -10,8 +11,6 @@ import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.ide.impl.ProjectUtil;
 import com.intellij.json.JsonFileType;
-import com.intellij.openapi.application.ApplicationInfo;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -19,34 +18,37 @@ import com.intellij.psi.FileViewProvider;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
-import com.intellij.util.io.HttpRequests;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.plugins.github.api.GithubApiRequest;
-import org.jetbrains.plugins.github.api.GithubApiRequestExecutor;
-import org.jetbrains.plugins.github.api.GithubApiResponse;
 import org.jetbrains.plugins.github.authentication.GHAccountsUtil;
-import org.jetbrains.plugins.github.authentication.accounts.GithubAccount;
 import org.jetbrains.plugins.github.util.GHCompatibilityUtil;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.Future;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.github.yunabraska.githubworkflow.completion.AutoPopupInsertHandler.addSuffix;
+import static com.github.yunabraska.githubworkflow.completion.CacheEntry.cacheEntryOf;
+import static com.github.yunabraska.githubworkflow.completion.CacheEntry.isFresh;
+import static com.github.yunabraska.githubworkflow.completion.GitHubHttpClient.gitHubHttpClient;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.CACHE_ONE_DAY;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.PATTERN_GITHUB_ENV;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.PATTERN_GITHUB_OUTPUT;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.GRAPHQL_BATCH_SIZE;
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.expressionTextOf;
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.isImplicit;
+import static java.util.Collections.emptyMap;
 import static java.util.Optional.ofNullable;
 
 public class GitHubWorkflowUtils {
@@ -60,37 +62,14 @@ public class GitHubWorkflowUtils {
             return Optional.empty();
         }
         final int cursorRel = offset - element.startIndexAbs();
-        final String offsetText = wholeText.substring(0, cursorRel);
-        final int bracketStart = offsetText.lastIndexOf("${{");
-        if (cursorRel > 2 && isInBrackets(offsetText, bracketStart) || ofNullable(element.parent()).filter(parent -> "if".equals(parent.key())).isPresent()) {
-            return getCaretBracketItem(prefix, wholeText, cursorRel);
+        final ExpressionText expressions = expressionTextOf(wholeText, isImplicit(element));
+        if (expressions.inExpression(cursorRel)) {
+            //PROPERTY CHAIN AT THE CURSOR e.g. [steps.step_id.outputs.|] - prefix gets the typed part
+            return Optional.of(expressions.chainAt(cursorRel).map(chain -> chain.partsBefore(cursorRel, prefix)).orElse(prefix));
         }
         return Optional.empty();
     }
 
-    public static Optional<String[]> getCaretBracketItem(final String[] prefix, final String wholeText, final int cursorRel) {
-        final char previousChar = cursorRel == 0 ? ' ' : wholeText.charAt(cursorRel - 1);
-        if (cursorRel > 1 && previousChar == '.') {
-            //NEXT ELEMENT
-            final int indexStart = getStartIndex(wholeText, cursorRel - 1);
-            final int indexEnd = getEndIndex(wholeText, cursorRel - 1, wholeText.length());
-            return Optional.of(wholeText.substring(indexStart, indexEnd + 1).split("\\."));
-        } else if (isNonValidNodeChar(previousChar)) {
-            //START ELEMENT
-            return Optional.of(prefix);
-        } else {
-            //MIDDLE ELEMENT
-            final int indexStart = cursorRel == 0 ? 0 : getStartIndex(wholeText, cursorRel - 1);
-            final String[] prefArray = wholeText.substring(indexStart, cursorRel).split("\\.", -1);
-            prefix[0] = prefArray[prefArray.length - 1];
-            return Optional.of(wholeText.substring(indexStart, cursorRel - prefix[0].length()).split("\\."));
-        }
-    }
-
-    private static boolean isNonValidNodeChar(final char c) {
-        return !Character.isLetterOrDigit(c) && c != '_' && c != '-';
-    }
-
     public static int getStartIndex(final CharSequence currentText, final int fromIndex) {
         int result = fromIndex;
         while (result > 0) {
@@ -104,28 +83,12 @@ public class GitHubWorkflowUtils {
         return Math.min(result, fromIndex);
     }
 
-    public static int getEndIndex(final CharSequence currentText, final int fromIndex, final int toIndex) {
-        int result = fromIndex;
-        final int endIndex = currentText.length();
-        while (result < endIndex && result < toIndex) {
-            if (isNonValidNodeChar(currentText.charAt(result))) {
-                break;
-            }
-            result++;
-        }
-        return result;
-    }
-
     public static String getDefaultPrefix(final CompletionParameters parameters) {
-        final String wholeText = parameters.getOriginalFile().getText();
+        //NO COPY: only the prefix gets materialized
+        final CharSequence wholeText = parameters.getOriginalFile().getViewProvider().getContents();
         final int caretOffset = parameters.getOffset();
         final int indexStart = getStartIndex(wholeText, caretOffset - 1);
-        return wholeText.substring(indexStart, caretOffset);
-    }
-
-
-    public static boolean isInBrackets(final String partString, final int bracketStart) {
-        return bracketStart != -1 && partString.lastIndexOf("}}") <= bracketStart;
+        return wholeText.subSequence(indexStart, caretOffset).toString();
     }
 
     public static String orEmpty(final String text) {
@@ -138,32 +101,6 @@ public class GitHubWorkflowUtils {
                 + ofNullable(n.description()).map(desc -> " " + desc).orElse("");
     }
 
-    public static Map<String, String> toGithubOutputs(final String text) {
-        final Map<String, String> variables = new HashMap<>();
-        if (text.contains("$GITHUB_OUTPUT") || text.contains("${GITHUB_OUTPUT}")) {
-            final Matcher matcher = PATTERN_GITHUB_OUTPUT.matcher(text);
-            while (matcher.find()) {
-                if (matcher.groupCount() >= 2) {
-                    variables.put(matcher.group(1), matcher.group(2));
-                }
-            }
-        }
-        return variables;
-    }
-
-    public static Map<String, String> toGithubEnvs(final String text) {
-        final Map<String, String> variables = new HashMap<>();
-        if (text.contains("GITHUB_ENV") || text.contains("${GITHUB_ENV}")) {
-            final Matcher matcher = PATTERN_GITHUB_ENV.matcher(text);
-            while (matcher.find()) {
-                if (matcher.groupCount() >= 2) {
-                    variables.put(matcher.group(1), matcher.group(2));
-                }
-            }
-        }
-        return variables;
-    }
-
     public static void addLookupElements(final CompletionResultSet resultSet, final Map<String, String> map, final NodeIcon icon, final char suffix) {
         if (!map.isEmpty()) {
             resultSet.addAllElements(toLookupElements(map, icon, suffix));
@@ -195,25 +132,66 @@ public class GitHubWorkflowUtils {
             final Path path = TMP_DIR.resolve(name + "_schema.json");
             final VirtualFile newVirtualFile = new LightVirtualFile("github_workflow_plugin_" + path.getFileName().toString(), JsonFileType.INSTANCE, "");
             //FIXME: how to use the intellij idea cache?
-            VfsUtil.saveText(newVirtualFile, downloadContent(url, path, CACHE_ONE_DAY * 30, false));
+            VfsUtil.saveText(newVirtualFile, downloadContent(url, path, CACHE_ONE_DAY));
             return newVirtualFile;
         } catch (final Exception ignored) {
             return null;
         }
     }
 
-    public static String downloadAction(final String url, final GitHubAction gitHubAction) {
-        return downloadContent(url, cachePath(gitHubAction), CACHE_ONE_DAY * 14, true);
+    //ASYNC: fresh cache file, else GitHub accounts then anonymous - stale entries are revalidated
+    //a failed download serves the cached entry marked as [stale], null without any
+    public static CompletableFuture<CacheEntry> downloadAction(final ActionRef actionRef) {
+        final Path path = cachePath(actionRef);
+        final Optional<CacheEntry> cached = cacheEntryOf(path);
+        if (cached.isPresent() && isFresh(path, CACHE_ONE_DAY)) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return githubTokens()
+                .thenCompose(tokens -> fetchAction(gitHubHttpClient(), actionRef, tokens, cached.orElse(null)))
+                .thenApply(entry -> writeCache(path, entry, cached.orElse(null)));
+    }
+
+    //BATCH: one GraphQL query per [GRAPHQL_BATCH_SIZE] uncached remote actions into the same cache files
+    //expired entries from a batch get one query for their blob ids - unchanged ones are touched, the rest is left to [downloadAction]
+    //needs a GitHub account - misses are left to [downloadAction], cached ones with HTTP validators get revalidated there
+    public static CompletableFuture<Void> downloadActions(final Collection<ActionRef> actionRefs) {
+        final List<ActionRef> remote = actionRefs.stream()
+                .filter(actionRef -> actionRef != null && actionRef.rawPath() != null)
+                .distinct()
+                .toList();
+        final List<ActionRef> missing = remote.stream().filter(actionRef -> !Files.exists(cachePath(actionRef))).toList();
+        final Map<ActionRef, CacheEntry> expired = remote.stream()
+                .filter(actionRef -> !isFresh(cachePath(actionRef), CACHE_ONE_DAY))
+                .map(actionRef -> cacheEntryOf(cachePath(actionRef)).filter(entry -> entry.sha() != null && !entry.hasValidators()).map(entry -> Map.entry(actionRef, entry)))
+                .flatMap(Optional::stream)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (GRAPHQL_BATCH_SIZE < 1 || (missing.size() < 2 && expired.size() < 2)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return githubTokens().thenCompose(tokens -> CompletableFuture.allOf(Stream.concat(
+                batchesOf(missing.size() < 2 ? List.of() : missing).map(batch -> fetchBlobs(gitHubHttpClient(), batch, tokens, 0)
+                        .thenAccept(blobs -> blobs.forEach((actionRef, entry) -> entry.writeTo(cachePath(actionRef))))),
+                batchesOf(expired.size() < 2 ? List.of() : List.copyOf(expired.keySet())).map(batch -> fetchBlobIds(gitHubHttpClient(), batch, tokens, 0)
+                        .thenAccept(ids -> ids.forEach((actionRef, id) -> ofNullable(expired.get(actionRef))
+                                .filter(entry -> id.equals(entry.sha()))
+                                .ifPresent(entry -> entry.asNotModified().writeTo(cachePath(actionRef))))))
+        ).toArray(CompletableFuture[]::new)));
+    }
+
+    private static Stream<List<ActionRef>> batchesOf(final List<ActionRef> actionRefs) {
+        return IntStream.iterate(0, i -> i < actionRefs.size(), i -> i + GRAPHQL_BATCH_SIZE)
+                .mapToObj(i -> actionRefs.subList(i, Math.min(i + GRAPHQL_BATCH_SIZE, actionRefs.size())));
     }
 
     @NotNull
-    public static Path cachePath(final GitHubAction gitHubAction) {
+    public static Path cachePath(final ActionRef actionRef) {
         return TMP_DIR.resolve(
-                clearString(gitHubAction.actionName())
-                        + ofNullable(gitHubAction.slug()).map(GitHubWorkflowUtils::clearString).orElse("")
-                        + ofNullable(gitHubAction.sub()).map(GitHubWorkflowUtils::clearString).orElse("")
-                        + ofNullable(gitHubAction.ref()).map(GitHubWorkflowUtils::clearString).orElse("")
-                        + ofNullable(gitHubAction.actionName()).map(GitHubWorkflowUtils::clearString).orElse("")
+                clearString(actionRef.name())
+                        + ofNullable(actionRef.slug()).map(GitHubWorkflowUtils::clearString).orElse("")
+                        + clearString(actionRef.sub())
+                        + ofNullable(actionRef.ref()).map(GitHubWorkflowUtils::clearString).orElse("")
+                        + clearString(actionRef.kind().name())
                         + "_schema.json"
         );
     }
@@ -222,61 +200,74 @@ public class GitHubWorkflowUtils {
         return input == null ? "" : "_" + input.replace("/", "_").replace("\\", "_");
     }
 
-    public static String downloadFileFromGitHub(final String downloadUrl) {
-        return GHAccountsUtil.getAccounts().stream().map(account -> {
+    //TOKENS CAN BLOCK - not on the caller thread
+    private static CompletableFuture<List<String>> githubTokens() {
+        return CompletableFuture.supplyAsync(() -> GHAccountsUtil.getAccounts().stream().map(account -> {
             try {
-                return downloadFromGitHub(downloadUrl, account);
+                return GHCompatibilityUtil.getOrRequestToken(account, ProjectUtil.getActiveProject());
             } catch (final Exception ignored) {
                 return null;
             }
-        }).filter(Objects::nonNull).findFirst().orElse(null);
+        }).filter(Objects::nonNull).toList(), AppExecutorUtil.getAppExecutorService());
     }
 
-    @SuppressWarnings("DataFlowIssue")
-    private static String downloadFromGitHub(final String downloadUrl, final GithubAccount account) throws IOException {
-        final String token = GHCompatibilityUtil.getOrRequestToken(account, ProjectUtil.getActiveProject());
-        return GithubApiRequestExecutor.Factory.getInstance().create(token).execute(new GithubApiRequest.Get<>(downloadUrl) {
-            @SuppressWarnings("BlockingMethodInNonBlockingContext")
-            @Override
-            public String extractResult(final @NotNull GithubApiResponse response) {
-                try {
-                    return response.handleBody(inputStream -> {
-                        try (final BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
-                            final StringBuilder stringBuilder = new StringBuilder();
-                            String line;
-                            while ((line = bufferedReader.readLine()) != null) {
-                                stringBuilder.append(line).append(System.lineSeparator());
-                            }
-                            return stringBuilder.toString();
-                        }
-                    });
-                } catch (final IOException ignored) {
-                    return null;
-                }
-            }
-        });
+    //FIRST ACCOUNT WHICH CAN QUERY - nothing without accounts
+    static CompletableFuture<Map<ActionRef, CacheEntry>> fetchBlobs(final GitHubHttpClient client, final List<ActionRef> batch, final List<String> tokens, final int index) {
+        if (index >= tokens.size()) {
+            return CompletableFuture.completedFuture(emptyMap());
+        }
+        return client.fetchBlobs(batch, tokens.get(index)).thenCompose(blobs -> blobs != null
+                ? CompletableFuture.completedFuture(blobs)
+                : fetchBlobs(client, batch, tokens, index + 1));
     }
 
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
-    private static String downloadContent(final String url, final Path path, final long expirationTime, final boolean usingGithub) {
-        try {
-            if (Files.exists(path) && (expirationTime < 1 || Files.getLastModifiedTime(path).toMillis() > System.currentTimeMillis() - expirationTime)) {
-                LOG.info("Cache load [" + path + "] expires in [" + (System.currentTimeMillis() - expirationTime) + "ms]");
-                return readFileAsync(path);
-            } else {
-                if (!Files.exists(path.getParent())) {
-                    Files.createDirectories(path.getParent());
-                }
-                final String content = Optional.of(usingGithub).filter(withGH -> withGH).map(withGH -> downloadFileFromGitHub(url)).orElseGet(() -> downloadContent(url));
-                Files.write(path, content.getBytes());
-                return content;
-            }
-        } catch (final Exception e) {
-            LOG.warn("Cache failed for [" + url + "] message [" + (e instanceof NullPointerException ? null : e.getMessage()) + "]");
-            return "";
+    //BATCHED ENTRIES HAVE NO HTTP VALIDATORS: the same blob id means not modified, else a plain GET brings content and validators
+    static CompletableFuture<CacheEntry> fetchAction(final GitHubHttpClient client, final ActionRef actionRef, final List<String> tokens, final CacheEntry cached) {
+        if (cached == null || cached.hasValidators() || cached.sha() == null || tokens.isEmpty()) {
+            return fetchRaw(client, actionRef, tokens, 0, cached);
+        }
+        return fetchBlobIds(client, List.of(actionRef), tokens, 0).thenCompose(ids -> cached.sha().equals(ids.get(actionRef))
+                ? CompletableFuture.completedFuture(cached.asNotModified())
+                : fetchRaw(client, actionRef, tokens, 0, cached));
+    }
+
+    static CompletableFuture<Map<ActionRef, String>> fetchBlobIds(final GitHubHttpClient client, final List<ActionRef> batch, final List<String> tokens, final int index) {
+        if (index >= tokens.size()) {
+            return CompletableFuture.completedFuture(emptyMap());
         }
+        return client.fetchBlobIds(batch, tokens.get(index)).thenCompose(ids -> ids != null
+                ? CompletableFuture.completedFuture(ids)
+                : fetchBlobIds(client, batch, tokens, index + 1));
     }
 
+    //FIRST ACCOUNT WITH CONTENT, ANONYMOUS LAST
+    static CompletableFuture<CacheEntry> fetchRaw(final GitHubHttpClient client, final ActionRef actionRef, final List<String> tokens, final int index, final CacheEntry cached) {
+        if (index >= tokens.size()) {
+            return client.fetchRaw(actionRef, null, cached);
+        }
+        return client.fetchRaw(actionRef, tokens.get(index), cached).thenCompose(entry -> entry != null
+                ? CompletableFuture.completedFuture(entry)
+                : fetchRaw(client, actionRef, tokens, index + 1, cached));
+    }
+
+    //SYNC ONLY FOR SCHEMAS - the schema providers need the file right away
+    private static String downloadContent(final String url, final Path path, final long expirationTime) {
+        final Optional<CacheEntry> cached = cacheEntryOf(path);
+        if (cached.isPresent() && isFresh(path, expirationTime)) {
+            LOG.info("Cache load [" + path + "] expires in [" + (System.currentTimeMillis() - expirationTime) + "ms]");
+            return cached.get().content();
+        }
+        return ofNullable(writeCache(path, gitHubHttpClient().fetch(URI.create(url), null, cached.orElse(null)).join(), cached.orElse(null))).map(CacheEntry::content).orElse("");
+    }
+
+    //FAILED DOWNLOADS: nothing cached, the cached entry is served as stale
+    private static CacheEntry writeCache(final Path path, final CacheEntry entry, final CacheEntry cached) {
+        if (entry == null) {
+            return cached == null ? null : cached.asStale();
+        }
+        entry.writeTo(path);
+        return entry;
+    }
 
     @SuppressWarnings("BlockingMethodInNonBlockingContext")
     public static String readFileAsync(final Path path) {
@@ -294,32 +285,6 @@ public class GitHubWorkflowUtils {
     }
 
 
-    @SuppressWarnings({"java:S2142", "BlockingMethodInNonBlockingContext"})
-    private static String downloadContent(final String urlString) {
-        LOG.info("Download [" + urlString + "]");
-        try {
-            final ApplicationInfo applicationInfo = ApplicationInfo.getInstance();
-            final Future<String> future = ApplicationManager.getApplication().executeOnPooledThread(() -> {
-                try {
-                    return HttpRequests
-                            .request(urlString)
-                            .gzip(true)
-                            .readTimeout(5000)
-                            .connectTimeout(5000)
-                            .userAgent(applicationInfo.getBuild().getProductCode() + "/" + applicationInfo.getFullVersion())
-                            .tuner(request -> request.setRequestProperty("Client-Name", "GitHub Workflow Plugin"))
-                            .readString();
-                } catch (final Exception e) {
-                    return null;
-                }
-            });
-            return future.get();
-        } catch (final Exception e) {
-            LOG.warn("Execution failed for [" + urlString + "] message [" + (e instanceof NullPointerException ? null : e.getMessage()) + "]");
-        }
-        return "";
-    }
-
     public static Optional<Path> getWorkflowFile(final PsiElement psiElement) {
         return Optional.ofNullable(psiElement)
                 .map(PsiElement::getContainingFile)
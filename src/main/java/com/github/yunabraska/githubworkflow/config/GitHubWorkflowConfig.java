@@ -1,21 +1,26 @@
 package com.github.yunabraska.githubworkflow.config;
 
+import com.github.yunabraska.githubworkflow.model.ActionRef;
 import com.github.yunabraska.githubworkflow.model.GitHubAction;
-import com.github.yunabraska.githubworkflow.model.WorkflowContext;
+import com.github.yunabraska.githubworkflow.model.LruCache;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 
 @SuppressWarnings("java:S2386")
 public class GitHubWorkflowConfig {
 
-    public static final Pattern PATTERN_GITHUB_OUTPUT = Pattern.compile("echo\\s+\"(.*?)=(.*?)\"\\s*>>\\s*\"?\\$\\{?GITHUB_OUTPUT\\}?\"?");
-    public static final Pattern PATTERN_GITHUB_ENV = Pattern.compile("echo\\s+\"(.*?)=(.*?)\"\\s*>>\\s*\"?\\$\\{?GITHUB_ENV\\}?\"?");
     public static final long CACHE_ONE_DAY = 24L * 60 * 60 * 1000;
     public static final long CACHE_TEN_MINUTES = 600000;
+    //EXPIRED ACTIONS ARE SERVED WHILE THEY REFRESH, DROPPED AFTER
+    public static final long CACHE_MAX_AGE = CACHE_ONE_DAY * 14;
+    //MAX CONCURRENT ACTION DOWNLOADS PER PROJECT [-Dgithub.workflow.resolver.parallelism=4]
+    public static final int RESOLVER_PARALLELISM = Math.max(1, Integer.getInteger("github.workflow.resolver.parallelism", 4));
+    //ACTIONS PER GRAPHQL QUERY, 0 DISABLES BATCHING [-Dgithub.workflow.graphql.batch=50]
+    public static final int GRAPHQL_BATCH_SIZE = Math.max(0, Integer.getInteger("github.workflow.graphql.batch", 50));
+    //ACTIONS IN MEMORY, LEAST RECENTLY USED GO FIRST - evicted ones reload from the cache files
+    public static final int ACTION_CACHE_SIZE = 2048;
     public static final String FIELD_ON = "on";
     public static final String FIELD_ENVS = "env";
     public static final String FIELD_RUN = "run";
@@ -32,8 +37,7 @@ public class GitHubWorkflowConfig {
     public static final String FIELD_OUTPUTS = "outputs";
     public static final String FIELD_SECRETS = "secrets";
     public static final Map<String, Supplier<Map<String, String>>> DEFAULT_VALUE_MAP = initProcessorMap();
-    public static final Map<String, GitHubAction> ACTION_CACHE = new ConcurrentHashMap<>();
-    public static final Map<String, WorkflowContext> WORKFLOW_CACHE = new ConcurrentHashMap<>();
+    public static final LruCache<ActionRef, GitHubAction> ACTION_CACHE = new LruCache<>(ACTION_CACHE_SIZE);
 
     private static Map<String, Supplier<Map<String, String>>> initProcessorMap() {
         final Map<String, Supplier<Map<String, String>>> result = new HashMap<>();
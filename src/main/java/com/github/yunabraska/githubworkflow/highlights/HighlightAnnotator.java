@@ -1,7 +1,10 @@
 package com.github.yunabraska.githubworkflow.highlights;
 
 import com.github.yunabraska.githubworkflow.model.CompletionItem;
+import com.github.yunabraska.githubworkflow.model.Expression.Chain;
+import com.github.yunabraska.githubworkflow.model.ActionRegistry;
 import com.github.yunabraska.githubworkflow.model.GitHubAction;
+import com.github.yunabraska.githubworkflow.model.ReferenceIndex;
 import com.github.yunabraska.githubworkflow.model.WorkflowContext;
 import com.github.yunabraska.githubworkflow.model.YamlElement;
 import com.github.yunabraska.githubworkflow.quickfixes.OpenSettingsIntentionAction;
@@ -29,21 +32,19 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.*;
 import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_TEXT_VARIABLE;
-import static com.github.yunabraska.githubworkflow.model.CompletionItem.listEnvs;
-import static com.github.yunabraska.githubworkflow.model.CompletionItem.listInputs;
+import static com.github.yunabraska.githubworkflow.model.CompletionItem.envScope;
 import static com.github.yunabraska.githubworkflow.model.CompletionItem.listJobOutputs;
 import static com.github.yunabraska.githubworkflow.model.CompletionItem.listJobs;
-import static com.github.yunabraska.githubworkflow.model.CompletionItem.listSecrets;
 import static com.github.yunabraska.githubworkflow.model.CompletionItem.listStepOutputs;
 import static com.github.yunabraska.githubworkflow.model.CompletionItem.listSteps;
+import static com.github.yunabraska.githubworkflow.model.CompletionItem.previousJobs;
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.expressionTextOf;
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.isImplicit;
 import static com.github.yunabraska.githubworkflow.model.WorkflowContext.WORKFLOW_CONTEXT_MAP;
 import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.getPath;
 import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.hasText;
@@ -52,17 +53,15 @@ import static java.util.Optional.ofNullable;
 
 public class HighlightAnnotator implements Annotator {
 
-    public static final Pattern CARET_BRACKET_ITEM_PATTERN = Pattern.compile("[\\s|\\t^{]\\b(\\w++(?:\\.\\w++)++)[\\s|\\t$}]");
-    //    public static final Pattern CARET_BRACKET_ITEM_PATTERN = Pattern.compile("\\b(\\w++(?:\\.\\w++)++)\\b");
     private static final Key<Boolean> ANNOTATED_KEY = new Key<>(HighlightAnnotator.class.getSimpleName());
 
     @Override
     public void annotate(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder) {
         final Project project = psiElement.getProject();
         if (psiElement.getLanguage() instanceof YAMLLanguage) {
-            ofNullable(WORKFLOW_CONTEXT_MAP.get(getPath(psiElement))).map(WorkflowContext::root).map(root -> toYamlElement(psiElement, root)).ifPresent(element -> {
+            ofNullable(WORKFLOW_CONTEXT_MAP.get(getPath(psiElement))).map(context -> toYamlElement(psiElement, context)).ifPresent(element -> {
                 if (FIELD_USES.equals(element.key())) {
-                    ofNullable(element.childTextNoQuotes()).map(GitHubAction::getGitHubAction).filter(GitHubAction::isAvailable).ifPresent(gitHubAction -> {
+                    ofNullable(element.childTextNoQuotes()).map(ActionRegistry::actionOf).filter(GitHubAction::isAvailable).ifPresent(gitHubAction -> {
                         final String browserText = "Open in Browser [" + gitHubAction.slug() + "]";
                         final String marketplaceText = "Open in Marketplace [" + gitHubAction.slug() + "]";
                         final List<QuickFix> quickFixes = gitHubAction.isAction()
@@ -81,7 +80,7 @@ public class HighlightAnnotator implements Annotator {
                 }
                 //VALIDATE ACTION INPUTS
                 if (!(psiElement instanceof LeafElement) && element.key() != null && ofNullable(element.parent()).map(YamlElement::key).filter(FIELD_WITH::equals).isPresent()) {
-                    element.findParentStep().map(YamlElement::uses).map(GitHubAction::getGitHubAction).map(action -> action.inputs(ofNullable(psiElement.getContainingFile()).map(PsiElement::getProject).orElse(null))).map(Map::keySet).ifPresent(inputs -> {
+                    element.findParentStep().map(YamlElement::uses).map(ActionRegistry::actionOf).map(action -> action.inputs(ofNullable(psiElement.getContainingFile()).map(PsiElement::getProject).orElse(null))).map(Map::keySet).ifPresent(inputs -> {
                         if (!inputs.contains(element.key())) {
                             create(
                                     psiElement,
@@ -96,7 +95,7 @@ public class HighlightAnnotator implements Annotator {
                     });
                 }
                 if (!(psiElement instanceof LeafElement) && element.findParent(FIELD_USES).isPresent()) {
-                    ofNullable(ACTION_CACHE.get(element.textOrChildText())).ifPresent(action -> create(
+                    ofNullable(ActionRegistry.cachedActionOf(element.textOrChildText())).ifPresent(action -> create(
                             psiElement,
                             holder,
                             action.isAvailable() ? INFORMATION : HighlightSeverity.WEAK_WARNING,
@@ -113,12 +112,10 @@ public class HighlightAnnotator implements Annotator {
                         || (element.parent() != null && element.parent().parent() != null && FIELD_ENVS.equals(element.parent().parent().key()))
                         || (element.parent() != null && element.parent().parent() != null && FIELD_OUTPUTS.equals(element.parent().parent().key()))
                 )) {
-                    //TODO: Find solution for undetected items with only one '.' e.g. [inputs.]
-                    //  MAYBE: regex needs to have '${{ }}', only 'if' content is different
                     processBracketItems(project, psiElement, holder, element);
                 } else if (FIELD_NEEDS.equals(element.key())) {
                     element.findParentJob().ifPresent(job -> {
-                        final List<String> jobs = element.context().jobs().values().stream().filter(j -> j.startIndexAbs() < job.startIndexAbs()).map(YamlElement::key).toList();
+                        final List<String> jobs = previousJobs(element).stream().map(YamlElement::key).toList();
                         element.children().forEach(jobChild -> {
                             final String jobId = jobChild.textOrChildTextNoQuotes().trim();
                             final TextRange range = new TextRange(jobChild.startIndexAbs(), jobChild.startIndexAbs() + jobId.length());
@@ -135,7 +132,7 @@ public class HighlightAnnotator implements Annotator {
                                 );
                             } else {
                                 //UNUSED JOB_ID
-                                if (job.allElements().noneMatch(child -> child.text() != null && child.text().contains(FIELD_NEEDS + "." + jobId + "."))) {
+                                if (element.context().references().references(FIELD_NEEDS + "." + jobId).stream().noneMatch(reference -> job.key().equals(reference.jobId()))) {
                                     create(
                                             psiElement,
                                             holder,
@@ -152,26 +149,8 @@ public class HighlightAnnotator implements Annotator {
                 } else if (FIELD_OUTPUTS.equals(element.key())) {
                     //CHECK FOR UNUSED JOB OUTPUTS
                     element.findParentJob().map(YamlElement::key).ifPresent(jobId -> {
-                        final List<String> usedOutputs = element.context().outputs().values().stream()
-                                .filter(output -> output.findParentOn().isPresent())
-                                .map(output -> output.child("value").orElse(null))
-                                .filter(Objects::nonNull)
-                                .map(YamlElement::textOrChildText)
-                                .flatMap(value -> {
-                                    final List<String[]> result = new ArrayList<>();
-                                    final Matcher matcher = CARET_BRACKET_ITEM_PATTERN.matcher(value);
-                                    while (matcher.find()) {
-                                        result.add(matcher.group().split("\\."));
-                                    }
-                                    return result.stream();
-                                })
-                                .filter(parts -> parts.length == 4)
-                                .filter(parts -> FIELD_JOBS.equals(parts[0]))
-                                .filter(parts -> jobId.equals(parts[1]))
-                                .filter(parts -> FIELD_OUTPUTS.equals(parts[2]))
-                                .map(parts -> parts[3])
-                                .toList();
-                        element.children().stream().filter(output -> output.key() != null).filter(output -> !usedOutputs.contains(output.key())).forEach(unusedOutput -> {
+                        final ReferenceIndex references = element.context().references();
+                        element.children().stream().filter(output -> output.key() != null).filter(output -> references.references(FIELD_JOBS + "." + jobId + "." + FIELD_OUTPUTS + "." + output.key()).stream().noneMatch(ReferenceIndex.Reference::inOn)).forEach(unusedOutput -> {
                             final TextRange range = new TextRange(unusedOutput.startIndexAbs(), unusedOutput.children().stream().mapToInt(YamlElement::endIndexAbs).max().orElseGet(unusedOutput::endIndexAbs));
                             create(
                                     psiElement,
@@ -186,7 +165,7 @@ public class HighlightAnnotator implements Annotator {
                     });
                 }
                 // SHOW Output Env && Output Variable declaration
-                if (psiElement instanceof LeafElement && element.parent() != null && FIELD_RUN.equals(element.parent().key()) && hasText(psiElement.getText()) && (PATTERN_GITHUB_OUTPUT.matcher(psiElement.getText()).find() || PATTERN_GITHUB_ENV.matcher(psiElement.getText()).find())) {
+                if (psiElement instanceof LeafElement && element.parent() != null && FIELD_RUN.equals(element.parent().key()) && hasText(psiElement.getText()) && element.shape().shellWrites().hasWrite(element.lineAt(psiElement.getTextRange().getStartOffset()))) {
                     holder.newSilentAnnotation(INFORMATION).gutterIconRenderer(new IconRenderer(null, psiElement, ICON_TEXT_VARIABLE.icon())).create();
                 }
             });
@@ -194,21 +173,20 @@ public class HighlightAnnotator implements Annotator {
     }
 
     private static void processBracketItems(final Project project, @NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final YamlElement element) {
-        final Matcher matcher = CARET_BRACKET_ITEM_PATTERN.matcher(psiElement.getText());
-        while (matcher.find()) {
-            final String[] parts = Arrays.stream(matcher.group().split("\\."))
-                    .map(s -> s.replace("{", ""))
-                    .map(s -> s.replace("}", ""))
-                    .map(String::trim)
-                    .toArray(String[]::new);
+        //PROPERTY CHAINS OF THE CACHED PARSE e.g. [steps.step_id.outputs.key], single names like [github] in [toJSON(github)] are valid
+        for (final Chain chain : expressionTextOf(psiElement.getText(), isImplicit(element)).chains()) {
+            if (chain.size() < 2) {
+                continue;
+            }
+            final String[] parts = chain.parts();
             final String scope = parts[0];
             switch (scope) {
                 case FIELD_INPUTS ->
-                        ifEnoughItems(holder, psiElement, parts, 2, 2, inputId -> isDefinedItem0(psiElement, holder, matcher, inputId, listInputs(element).stream().map(CompletionItem::key).toList()));
-                case FIELD_SECRETS -> ifEnoughItems(holder, psiElement, parts, 2, 2, secretId -> {
-                    final List<String> secrets = listSecrets(element).stream().map(CompletionItem::key).toList();
+                        ifEnoughItems(holder, psiElement, chain, 2, 2, inputId -> isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), inputId, element.context().symbols().inputs().keySet()));
+                case FIELD_SECRETS -> ifEnoughItems(holder, psiElement, chain, 2, 2, secretId -> {
+                    final Set<String> secrets = element.context().symbols().secrets().keySet();
                     if (!secrets.contains(secretId)) {
-                        final TextRange textRange = simpleTextRange(psiElement, matcher, secretId);
+                        final TextRange textRange = partRange(psiElement, chain, 1);
                         create(
                                 psiElement,
                                 holder,
@@ -221,36 +199,36 @@ public class HighlightAnnotator implements Annotator {
                     }
                 });
                 case FIELD_ENVS ->
-                        ifEnoughItems(holder, psiElement, parts, 2, -1, envId -> isDefinedItem0(psiElement, holder, matcher, envId, listEnvs(element, element.startIndexAbs()).stream().map(CompletionItem::key).toList()));
+                        ifEnoughItems(holder, psiElement, chain, 2, -1, envId -> isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), envId, envScope(element).keys()));
                 case FIELD_GITHUB ->
-                        ifEnoughItems(holder, psiElement, parts, 2, -1, envId -> isDefinedItem0(psiElement, holder, matcher, envId, new ArrayList<>(DEFAULT_VALUE_MAP.get(FIELD_GITHUB).get().keySet())));
+                        ifEnoughItems(holder, psiElement, chain, 2, -1, envId -> isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), envId, new ArrayList<>(DEFAULT_VALUE_MAP.get(FIELD_GITHUB).get().keySet())));
                 case FIELD_RUNNER ->
-                        ifEnoughItems(holder, psiElement, parts, 2, 2, runnerId -> isDefinedItem0(psiElement, holder, matcher, runnerId, new ArrayList<>(DEFAULT_VALUE_MAP.get(FIELD_RUNNER).get().keySet())));
-                case FIELD_STEPS -> ifEnoughItems(holder, psiElement, parts, 4, 4, stepId -> {
+                        ifEnoughItems(holder, psiElement, chain, 2, 2, runnerId -> isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), runnerId, new ArrayList<>(DEFAULT_VALUE_MAP.get(FIELD_RUNNER).get().keySet())));
+                case FIELD_STEPS -> ifEnoughItems(holder, psiElement, chain, 4, 4, stepId -> {
                     final List<String> steps = listSteps(element).stream().map(CompletionItem::key).toList();
-                    if (isDefinedItem0(psiElement, holder, matcher, stepId, steps) && isField2Valid(psiElement, holder, matcher, parts[2])) {
+                    if (isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), stepId, steps) && isField2Valid(psiElement, holder, partRange(psiElement, chain, 2), parts[2])) {
                         final List<String> outputs = listStepOutputs(project, element, element.startIndexAbs(), stepId).stream().map(CompletionItem::key).toList();
-                        isValidItem3(psiElement, holder, matcher, parts[3], outputs);
+                        isValidItem3(psiElement, holder, partRange(psiElement, chain, 3), parts[3], outputs);
 
                     }
                 });
                 case FIELD_JOBS ->
                     // TODO: CHECK OUTPUTS FOR JOBS && NEEDS && STEPS e.g. [ if (!FIELD_OUTPUTS.equals(parts[2])) ]
-                        ifEnoughItems(holder, psiElement, parts, 4, 4, jobId -> {
+                        ifEnoughItems(holder, psiElement, chain, 4, 4, jobId -> {
                             final List<String> jobs = listJobs(element).stream().map(CompletionItem::key).toList();
                             //noinspection DuplicatedCode
-                            if (isDefinedItem0(psiElement, holder, matcher, jobId, jobs) && isField2Valid(psiElement, holder, matcher, parts[2])) {
+                            if (isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), jobId, jobs) && isField2Valid(psiElement, holder, partRange(psiElement, chain, 2), parts[2])) {
                                 final List<String> outputs = listJobOutputs(project, element, jobId).stream().map(CompletionItem::key).toList();
-                                isValidItem3(psiElement, holder, matcher, parts[3], outputs);
+                                isValidItem3(psiElement, holder, partRange(psiElement, chain, 3), parts[3], outputs);
                             }
                         });
                 case FIELD_NEEDS ->
-                        ifEnoughItems(holder, psiElement, parts, 4, 4, jobId -> element.findParentJob().flatMap(job -> job.child(FIELD_NEEDS)).ifPresent(needElement -> {
+                        ifEnoughItems(holder, psiElement, chain, 4, 4, jobId -> element.findParentJob().flatMap(job -> job.child(FIELD_NEEDS)).ifPresent(needElement -> {
                             final Set<String> needs = needElement.needItems();
                             //noinspection DuplicatedCode
-                            if (isDefinedItem0(psiElement, holder, matcher, jobId, needs) && isField2Valid(psiElement, holder, matcher, parts[2])) {
+                            if (isDefinedItem0(psiElement, holder, partRange(psiElement, chain, 1), jobId, needs) && isField2Valid(psiElement, holder, partRange(psiElement, chain, 2), parts[2])) {
                                 final List<String> outputs = listJobOutputs(project, element, jobId).stream().map(CompletionItem::key).toList();
-                                isValidItem3(psiElement, holder, matcher, parts[3], outputs);
+                                isValidItem3(psiElement, holder, partRange(psiElement, chain, 3), parts[3], outputs);
                             }
                         }));
                 default -> {
@@ -261,9 +239,8 @@ public class HighlightAnnotator implements Annotator {
     }
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    private static boolean isField2Valid(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final Matcher matcher, final String itemId) {
+    private static boolean isField2Valid(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final TextRange textRange, final String itemId) {
         if (!FIELD_OUTPUTS.equals(itemId)) {
-            final TextRange textRange = simpleTextRange(psiElement, matcher, itemId);
             create(
                     psiElement,
                     holder,
@@ -278,9 +255,8 @@ public class HighlightAnnotator implements Annotator {
         return true;
     }
 
-    private static void isValidItem3(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final Matcher matcher, final String itemId, final List<String> outputs) {
+    private static void isValidItem3(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final TextRange textRange, final String itemId, final List<String> outputs) {
         if (!outputs.contains(itemId)) {
-            final TextRange textRange = simpleTextRange(psiElement, matcher, itemId);
             create(
                     psiElement,
                     holder,
@@ -293,9 +269,8 @@ public class HighlightAnnotator implements Annotator {
         }
     }
 
-    private static boolean isDefinedItem0(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final Matcher matcher, final String itemId, final Collection<String> items) {
+    private static boolean isDefinedItem0(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder holder, final TextRange textRange, final String itemId, final Collection<String> items) {
         if (!items.contains(itemId)) {
-            final TextRange textRange = simpleTextRange(psiElement, matcher, itemId);
             create(
                     psiElement,
                     holder,
@@ -310,25 +285,17 @@ public class HighlightAnnotator implements Annotator {
         return true;
     }
 
-    private static YamlElement toYamlElement(final PsiElement psiElement, final YamlElement root) {
-        return psiElement instanceof final YAMLKeyValue kvPSI && kvPSI.getKey() != null && kvPSI.getKey().getTextRange() != null
-                ? root.allElements()
-                .filter(element -> element.startIndexAbs() > -1 && element.startIndexAbs() <= kvPSI.getKey().getTextRange().getStartOffset())
-                .filter(element -> element.endIndexAbs() > -1 && element.endIndexAbs() >= kvPSI.getKey().getTextRange().getEndOffset())
-                .filter(element -> element.textNoQuotes() != null && !element.textNoQuotes().isEmpty() && !element.textNoQuotes().isBlank())
-                .findFirst()
-                .orElseGet(() -> root.context().getClosestElement(psiElement.getTextOffset()).orElse(null))
-                : root.allElements()
-                .filter(element -> element.startIndexAbs() > -1 && element.startIndexAbs() <= psiElement.getTextRange().getStartOffset())
-                .filter(element -> element.endIndexAbs() > -1 && element.endIndexAbs() >= psiElement.getTextRange().getEndOffset())
-                .filter(element -> element.textNoQuotes() != null && !element.textNoQuotes().isEmpty() && !element.textNoQuotes().isBlank())
-                .findFirst()
-                .orElseGet(() -> root.context().getClosestElement(psiElement.getTextOffset()).orElse(null));
+    private static YamlElement toYamlElement(final PsiElement psiElement, final WorkflowContext context) {
+        final TextRange range = psiElement instanceof final YAMLKeyValue kvPSI && kvPSI.getKey() != null && kvPSI.getKey().getTextRange() != null
+                ? kvPSI.getKey().getTextRange()
+                : psiElement.getTextRange();
+        return context.getContainingElement(range.getStartOffset(), range.getEndOffset(), YamlElement::hasTextNoQuotes)
+                .orElseGet(() -> context.getClosestElement(psiElement.getTextOffset()).orElse(null));
     }
 
-    private static TextRange simpleTextRange(@NotNull final PsiElement psiElement, final Matcher matcher, final String itemId) {
-        final int start = psiElement.getTextRange().getStartOffset() + psiElement.getText().indexOf(itemId, matcher.start(0));
-        return new TextRange(start, start + itemId.length());
+    private static TextRange partRange(@NotNull final PsiElement psiElement, final Chain chain, final int index) {
+        final int start = psiElement.getTextRange().getStartOffset();
+        return new TextRange(start + chain.start(index), start + chain.end(index));
     }
 
     private static TextRange fixRange(final PsiElement psiElement, final TextRange range) {
@@ -343,15 +310,15 @@ public class HighlightAnnotator implements Annotator {
     private static void ifEnoughItems(
             final AnnotationHolder holder,
             final PsiElement psiElement,
-            final String[] parts,
+            final Chain chain,
             final int min,
             final int max,
             final Consumer<String> then
     ) {
-        if (parts.length < min || parts.length < 2) {
-            final String unfinishedStatement = String.join(".", parts);
-            final int startOffset = psiElement.getTextRange().getStartOffset() + psiElement.getText().indexOf(unfinishedStatement);
-            final TextRange textRange = new TextRange(startOffset, startOffset + unfinishedStatement.length());
+        final int startOffset = psiElement.getTextRange().getStartOffset();
+        if (chain.size() < min || chain.size() < 2 || !chain.isComplete()) {
+            final String unfinishedStatement = psiElement.getText().substring(chain.start(), chain.end());
+            final TextRange textRange = new TextRange(startOffset + chain.start(), startOffset + chain.end());
             create(
                     psiElement,
                     holder,
@@ -361,12 +328,9 @@ public class HighlightAnnotator implements Annotator {
                     textRange,
                     "Incomplete statement [" + unfinishedStatement + "]"
             );
-        } else if (max != -1 && parts.length > max) {
-            final String fullStatement = String.join(".", parts);
-            final String longPart = "." + String.join(".", (Arrays.copyOfRange(parts, max, parts.length)));
-            final int statementStartIndex = psiElement.getText().indexOf(fullStatement);
-            final int startOffset = psiElement.getTextRange().getStartOffset() + statementStartIndex + fullStatement.lastIndexOf(longPart);
-            final TextRange textRange = new TextRange(startOffset, startOffset + longPart.length());
+        } else if (max != -1 && chain.size() > max) {
+            final String longPart = psiElement.getText().substring(chain.end(max - 1), chain.end());
+            final TextRange textRange = new TextRange(startOffset + chain.end(max - 1), startOffset + chain.end());
             create(
                     psiElement,
                     holder,
@@ -377,7 +341,7 @@ public class HighlightAnnotator implements Annotator {
                     "Not valid here [" + longPart + "]"
             );
         } else {
-            then.accept(parts[1]);
+            then.accept(chain.part(1));
         }
     }
 
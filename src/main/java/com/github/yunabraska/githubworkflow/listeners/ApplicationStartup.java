@@ -1,6 +1,7 @@
 package com.github.yunabraska.githubworkflow.listeners;
 
 import com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils;
+import com.github.yunabraska.githubworkflow.model.ActionResolver;
 import com.github.yunabraska.githubworkflow.model.WorkflowContext;
 import com.github.yunabraska.githubworkflow.model.YamlElement;
 import com.github.yunabraska.githubworkflow.model.YamlElementHelper;
@@ -11,8 +12,6 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.ProjectActivity;
 import com.intellij.openapi.util.Disposer;
@@ -104,24 +103,6 @@ public class ApplicationStartup implements ProjectActivity {
     }
 
     private static void downloadWorkflows(final Project project, final VirtualFile virtualFile, final WorkflowContext context) {
-        context.actions().values().forEach(action -> new Task.Backgroundable(project, "Resolving " + (action.isAction() ? "action" : "workflow") + action.slug(), false) {
-            @Override
-            public void run(@NotNull final ProgressIndicator indicator) {
-                try {
-                    indicator.setIndeterminate(false);
-                    indicator.setFraction(0.3);
-                    indicator.setText("Resolving " + (action.isAction() ? "action" : "workflow") + action.slug());
-                    action.resolve(project);
-                    indicator.setText("Done resolving " + (action.isAction() ? "action" : "workflow") + action.slug());
-                    indicator.setFraction(0.8);
-                    triggerSyntaxHighLightingRefresh(project, virtualFile);
-                } catch (final Exception e) {
-                    // Proceed action even on issues within the progress bar
-                    action.resolve(project);
-                    triggerSyntaxHighLightingRefresh(project, virtualFile);
-                    throw e;
-                }
-            }
-        }.queue());
+        ActionResolver.getInstance(project).resolve(context.actions().values(), () -> triggerSyntaxHighLightingRefresh(project, virtualFile));
     }
 }
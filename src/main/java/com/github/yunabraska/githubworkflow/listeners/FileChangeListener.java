@@ -11,7 +11,9 @@ import java.util.Optional;
 
 import static com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils.isWorkflowPath;
 import static com.github.yunabraska.githubworkflow.listeners.ApplicationStartup.asyncInitWorkflowFile;
+import static com.github.yunabraska.githubworkflow.model.WorkflowContext.WORKFLOW_CONTEXT_MAP;
 import static com.intellij.openapi.util.io.NioFiles.toPath;
+import static java.util.Optional.ofNullable;
 
 public class FileChangeListener implements DocumentListener {
 
@@ -29,6 +31,7 @@ public class FileChangeListener implements DocumentListener {
                 .map(document -> FileDocumentManager.getInstance().getFile(document))
                 .ifPresent(virtualFile -> {
                     if (isWorkflowPath(toPath(virtualFile.getPath()))) {
+                        ofNullable(WORKFLOW_CONTEXT_MAP.get(virtualFile.getPath())).ifPresent(context -> context.change(event.getOffset(), event.getOldLength(), event.getNewLength()));
                         alarm.cancelAllRequests();
                         alarm.addRequest(() -> {
                             if (!project.isDisposed()) {
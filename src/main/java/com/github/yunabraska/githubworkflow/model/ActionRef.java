@@ -0,0 +1,173 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.github.yunabraska.githubworkflow.model.YamlElement.CURSOR_STRING;
+import static java.util.Optional.ofNullable;
+
+//CANONICAL [uses] REFERENCE: immutable and interned - the key of actions, cached workflows and cache files
+//[actions/checkout@v4] [owner/repo/sub/path@ref] [owner/repo/.github/workflows/build.yml@main] [./.github/actions/local]
+public class ActionRef {
+
+    public enum Kind {
+        ACTION,
+        WORKFLOW,
+        LOCAL
+    }
+
+    public static final String GITHUB_HOST = "github.com";
+    //BOUNDED LRU: equal references stay equal after eviction, only the sharing ends
+    public static final int MAX_SIZE = 4096;
+    private static final LruCache<String, ActionRef> POOL = new LruCache<>(MAX_SIZE);
+
+    private final String uses;
+    private final String host;
+    private final String owner;
+    private final String repo;
+    //PATH OF THE ACTION IN THE REPOSITORY e.g. [/sub/path], empty for the root action and for workflows
+    private final String sub;
+    private final String ref;
+    //ACTION: repo + sub, WORKFLOW: file name, LOCAL: path
+    private final String name;
+    private final Kind kind;
+    private final int hash;
+
+    private ActionRef(final String uses) {
+        final int tagIndex = uses.indexOf('@');
+        final int ownerEnd = uses.indexOf('/');
+        final int repoEnd = ownerEnd == -1 ? -1 : uses.indexOf('/', ownerEnd + 1);
+        final boolean remote = tagIndex != -1 && ownerEnd > 0 && ownerEnd < tagIndex;
+        this.uses = uses;
+        this.host = tagIndex == -1 ? null : GITHUB_HOST;
+        this.ref = tagIndex == -1 ? null : uses.substring(tagIndex + 1);
+        this.kind = tagIndex == -1 ? Kind.LOCAL : (uses.contains(".yaml") || uses.contains(".yml") || uses.contains(".action.y") ? Kind.WORKFLOW : Kind.ACTION);
+        if (remote) {
+            final boolean hasSub = repoEnd > 0 && repoEnd < tagIndex;
+            this.owner = uses.substring(0, ownerEnd);
+            this.repo = uses.substring(ownerEnd + 1, hasSub ? repoEnd : tagIndex);
+            this.sub = kind == Kind.ACTION && hasSub ? "/" + uses.substring(repoEnd + 1, tagIndex) : "";
+            this.name = kind == Kind.WORKFLOW ? uses.substring(uses.lastIndexOf('/', tagIndex) + 1, tagIndex) : uses.substring(ownerEnd + 1, tagIndex);
+        } else {
+            this.owner = null;
+            this.repo = null;
+            this.sub = "";
+            this.name = uses;
+        }
+        this.hash = uses.hashCode();
+    }
+
+    //NULL FOR EMPTY [uses] - pure CPU, safe while indexing
+    public static ActionRef actionRefOf(final String uses) {
+        final String key = usesOf(uses);
+        if (key == null) {
+            return null;
+        }
+        return POOL.computeIfAbsent(key, ActionRef::new);
+    }
+
+    //CANONICAL TEXT: without quotes, whitespace and completion cursor
+    public static String usesOf(final String uses) {
+        return ofNullable(uses)
+                .map(text -> text.replace(CURSOR_STRING, ""))
+                .map(String::trim)
+                .map(YamlElementHelper::removeQuotes)
+                .map(String::trim)
+                .filter(YamlElementHelper::hasText)
+                .orElse(null);
+    }
+
+    public String uses() {
+        return uses;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public String owner() {
+        return owner;
+    }
+
+    public String repo() {
+        return repo;
+    }
+
+    public String sub() {
+        return sub;
+    }
+
+    public String ref() {
+        return ref;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public boolean isAction() {
+        return kind != Kind.WORKFLOW;
+    }
+
+    public boolean isLocal() {
+        return kind == Kind.LOCAL;
+    }
+
+    //[owner/repo]
+    public String slug() {
+        return owner == null ? null : owner + "/" + repo;
+    }
+
+    public String toUrl() {
+        return remote().map(slug -> "https://" + host + "/" + slug + "/blob/" + ref + filePath()).orElse(null);
+    }
+
+    public String toRawUrl() {
+        return ofNullable(rawPath()).map(path -> "https://raw.githubusercontent.com" + path).orElse(null);
+    }
+
+    //PATH ON THE RAW CONTENT HOST e.g. [/actions/checkout/v4/action.yml]
+    public String rawPath() {
+        return remote().map(slug -> "/" + slug + "/" + ref + filePath()).orElse(null);
+    }
+
+    //FILE IN THE REPOSITORY e.g. [/sub/path/action.yml] [/.github/workflows/build.yml]
+    public String filePath() {
+        return kind == Kind.ACTION ? sub + "/action.yml" : "/.github/workflows/" + name;
+    }
+
+    public String marketplaceUrl() {
+        return "https://" + GITHUB_HOST + "/marketplace/" + slug();
+    }
+
+    //LOCAL: path relative to the project dir
+    public String downloadUrl() {
+        return isLocal() ? uses + "/action.yml" : toRawUrl();
+    }
+
+    private Optional<String> remote() {
+        return ofNullable(slug()).filter(slug -> ref != null);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ActionRef that = (ActionRef) o;
+        return hash == that.hash && Objects.equals(uses, that.uses);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return uses;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.ACTION_CACHE;
+import static java.util.Optional.ofNullable;
+
+//ACTIONS BY CANONICAL REFERENCE [ActionRef] - the model only records references, lookups never block
+//downloads and revalidation run in [ActionResolver]
+public class ActionRegistry {
+
+    private ActionRegistry() {
+    }
+
+    public static GitHubAction actionOf(final String uses) {
+        return actionOf(ActionRef.actionRefOf(uses));
+    }
+
+    //NO I/O: one action per reference, an expired action is still served [ActionResolver] refreshes it
+    //only after its max age it gets replaced - its cache file stays for revalidation [ETag]
+    public static GitHubAction actionOf(final ActionRef ref) {
+        if (ref == null) {
+            return new GitHubAction(null);
+        }
+        return ACTION_CACHE.compute(ref, (key, action) -> action != null && !isDropped(action) ? action : new GitHubAction(key));
+    }
+
+    //CACHED ONLY - no new entry
+    public static GitHubAction cachedActionOf(final String uses) {
+        return ofNullable(ActionRef.actionRefOf(uses)).map(ACTION_CACHE::get).orElse(null);
+    }
+
+    //UNRESOLVED ACTIONS HAVE NO EXPIRATION YET
+    private static boolean isDropped(final GitHubAction action) {
+        return action.maxAge() > 0 && action.maxAge() < System.currentTimeMillis();
+    }
+}
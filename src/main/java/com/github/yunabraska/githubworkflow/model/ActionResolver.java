@@ -0,0 +1,187 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.RESOLVER_PARALLELISM;
+
+//PROJECT RESOLVER: one download per action while in flight, at most [RESOLVER_PARALLELISM] at once, one progress bar for all
+@Service(Service.Level.PROJECT)
+public final class ActionResolver implements Disposable {
+
+    private final Project project;
+    private final Map<ActionRef, CompletableFuture<GitHubAction>> inFlight = new ConcurrentHashMap<>();
+    //PARALLELISM CAP: counts started resolutions, not threads - downloads don't hold a thread while waiting
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean disposed = new AtomicBoolean();
+    //AGGREGATED PROGRESS
+    private final AtomicInteger requested = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicBoolean progress = new AtomicBoolean();
+    private final Object monitor = new Object();
+
+    public ActionResolver(final Project project) {
+        this.project = project;
+    }
+
+    public static ActionResolver getInstance(final Project project) {
+        return project.getService(ActionResolver.class);
+    }
+
+    //[onResolved] ONCE ALL GIVEN ACTIONS ARE DONE - also on failures
+    //new resolutions wait for one batch download, single downloads only fetch what the batch missed
+    public CompletableFuture<Void> resolve(final Collection<ActionRef> refs, final Runnable onResolved) {
+        final CompletableFuture<Void> batch = new CompletableFuture<>();
+        final List<ActionRef> started = new ArrayList<>();
+        final CompletableFuture<?>[] futures = new LinkedHashSet<>(refs).stream()
+                .filter(Objects::nonNull)
+                .map(ref -> resolve(ref, batch, started))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.completedFuture(started).thenCompose(GitHubWorkflowUtils::downloadActions).whenComplete((ignored, error) -> batch.complete(null));
+        return CompletableFuture.allOf(futures).whenComplete((ignored, error) -> onResolved.run());
+    }
+
+    public CompletableFuture<GitHubAction> resolve(final ActionRef ref) {
+        return resolve(ref, CompletableFuture.completedFuture(null), new ArrayList<>());
+    }
+
+    //SHARED: concurrent requests for the same reference get the same future
+    private CompletableFuture<GitHubAction> resolve(final ActionRef ref, final CompletableFuture<Void> after, final List<ActionRef> started) {
+        final CompletableFuture<GitHubAction> shared = inFlight.get(ref);
+        if (shared != null) {
+            return shared;
+        }
+        final GitHubAction action = ActionRegistry.actionOf(ref);
+        if (!action.needsResolve()) {
+            return CompletableFuture.completedFuture(action);
+        }
+        final CompletableFuture<GitHubAction> created = new CompletableFuture<>();
+        final CompletableFuture<GitHubAction> existing = inFlight.putIfAbsent(ref, created);
+        if (existing != null) {
+            return existing;
+        }
+        started.add(ref);
+        requested.incrementAndGet();
+        showProgress();
+        after.whenComplete((ignored, error) -> {
+            waiting.add(() -> run(ref, action, created));
+            startNext();
+        });
+        return created;
+    }
+
+    public int pending() {
+        return inFlight.size();
+    }
+
+    //AT MOST [RESOLVER_PARALLELISM] RUNNING - a finished resolution starts the next one
+    private void startNext() {
+        while (!waiting.isEmpty() && !disposed.get()) {
+            final int current = running.get();
+            if (current >= RESOLVER_PARALLELISM) {
+                return;
+            }
+            if (running.compareAndSet(current, current + 1)) {
+                final Runnable next = waiting.poll();
+                if (next == null) {
+                    running.decrementAndGet();
+                } else {
+                    AppExecutorUtil.getAppExecutorService().execute(next);
+                }
+            }
+        }
+    }
+
+    //A SYNCHRONOUS THROW COMPLETES THE FUTURE TOO - else the slot and the in flight entry would leak
+    private void run(final ActionRef ref, final GitHubAction action, final CompletableFuture<GitHubAction> future) {
+        CompletableFuture<Void> resolution;
+        try {
+            resolution = project.isDisposed() ? CompletableFuture.completedFuture(null) : action.resolve(project);
+        } catch (final Exception e) {
+            resolution = CompletableFuture.failedFuture(e);
+        }
+        resolution.whenComplete((ignored, error) -> {
+            done(ref, future);
+            running.decrementAndGet();
+            startNext();
+            if (error == null) {
+                future.complete(action);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+    }
+
+    //REMOVE BEFORE COMPLETING - a later request starts a new resolution instead of getting a finished future
+    private void done(final ActionRef ref, final CompletableFuture<GitHubAction> future) {
+        inFlight.remove(ref, future);
+        completed.incrementAndGet();
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    private void showProgress() {
+        if (project.isDisposed() || !progress.compareAndSet(false, true)) {
+            return;
+        }
+        new Task.Backgroundable(project, "Resolving GitHub actions", false) {
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                final int start = completed.get();
+                int done;
+                int total;
+                while ((done = completed.get() - start) < (total = requested.get() - start) && !project.isDisposed()) {
+                    indicator.setFraction((double) done / total);
+                    indicator.setText("Resolving GitHub actions " + done + "/" + total);
+                    synchronized (monitor) {
+                        try {
+                            monitor.wait(250);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                progress.set(false);
+                // REQUESTED WHILE FINISHING
+                if (completed.get() < requested.get()) {
+                    showProgress();
+                }
+            }
+        }.queue();
+    }
+
+    @Override
+    public void dispose() {
+        disposed.set(true);
+        waiting.clear();
+        inFlight.values().forEach(future -> future.cancel(false));
+        inFlight.clear();
+    }
+}
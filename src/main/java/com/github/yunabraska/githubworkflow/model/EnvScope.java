@@ -0,0 +1,69 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.config.NodeIcon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.DEFAULT_VALUE_MAP;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ENVS;
+import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_ENV;
+import static com.github.yunabraska.githubworkflow.model.CompletionItem.completionItemOf;
+
+//PERSISTENT ENV SCOPE: defaults -> workflow -> job -> [GITHUB_ENV] writes of earlier steps -> step
+//scopes share their parents, a step scope only holds its own envs
+public class EnvScope {
+
+    public static final EnvScope DEFAULT_ENVS = new EnvScope(null, DEFAULT_VALUE_MAP.get(FIELD_ENVS).get(), ICON_ENV);
+
+    private final EnvScope parent;
+    private final Map<String, String> envs;
+    private final NodeIcon icon;
+    //LAZY: visible keys of the whole chain
+    private volatile Set<String> keys;
+
+    private EnvScope(final EnvScope parent, final Map<String, String> envs, final NodeIcon icon) {
+        this.parent = parent;
+        this.envs = Collections.unmodifiableMap(envs);
+        this.icon = icon;
+    }
+
+    //CHILD SCOPE - empty maps don't add a level
+    public EnvScope with(final Map<String, String> childEnvs, final NodeIcon childIcon) {
+        return childEnvs == null || childEnvs.isEmpty() ? this : new EnvScope(this, childEnvs, childIcon);
+    }
+
+    public boolean contains(final String key) {
+        for (EnvScope scope = this; scope != null; scope = scope.parent) {
+            if (scope.envs.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<String> keys() {
+        Set<String> result = keys;
+        if (result == null) {
+            final Set<String> all = parent == null ? new HashSet<>() : new HashSet<>(parent.keys());
+            all.addAll(envs.keySet());
+            result = Collections.unmodifiableSet(all);
+            keys = result;
+        }
+        return result;
+    }
+
+    //INNERMOST FIRST
+    public List<CompletionItem> completionItems() {
+        final List<CompletionItem> result = new ArrayList<>();
+        for (EnvScope scope = this; scope != null; scope = scope.parent) {
+            final NodeIcon scopeIcon = scope.icon;
+            scope.envs.forEach((key, value) -> result.add(completionItemOf(key, value, scopeIcon)));
+        }
+        return result;
+    }
+}
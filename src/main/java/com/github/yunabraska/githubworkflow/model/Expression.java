@@ -0,0 +1,183 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Collections.unmodifiableList;
+
+//AST NODE OF A ${{ }} EXPRESSION - immutable, offsets relative to the parsed text
+public class Expression {
+
+    public enum Kind {
+        //[true, 'text', 42]
+        LITERAL,
+        //[steps]
+        IDENTIFIER,
+        //[steps.build] value = property name, empty when missing [steps.]
+        PROPERTY,
+        //[steps['build']]
+        INDEX,
+        //[steps.*]
+        FILTER,
+        //[contains(a, b)] value = function name
+        CALL,
+        //[!a] value = operator
+        UNARY,
+        //[a == b] value = operator
+        BINARY,
+        ERROR
+    }
+
+    private static final Expression[] NONE = new Expression[0];
+    private final Kind kind;
+    private final String value;
+    private final int start;
+    private final int end;
+    private final Expression[] children;
+
+    public Expression(final Kind kind, final String value, final int start, final int end, final Expression... children) {
+        this.kind = kind;
+        this.value = value;
+        this.start = start;
+        this.end = end;
+        this.children = children == null || children.length == 0 ? NONE : children;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int childCount() {
+        return children.length;
+    }
+
+    public Expression child(final int index) {
+        return children[index];
+    }
+
+    public List<Expression> children() {
+        return unmodifiableList(Arrays.asList(children));
+    }
+
+    //PROPERTY CHAIN: identifier followed by properties, filters and literal indices e.g. [steps.build.outputs['key']]
+    public boolean isChain() {
+        return switch (kind) {
+            case IDENTIFIER -> true;
+            case PROPERTY, FILTER -> children[0].isChain();
+            case INDEX -> children[0].isChain() && children[1].kind == Kind.LITERAL && children[1].value.startsWith("'");
+            default -> false;
+        };
+    }
+
+    //LONGEST CHAINS ONLY e.g. [steps.build.outputs] but not [steps.build]
+    public void chains(final Consumer<Chain> consumer) {
+        if (kind != Kind.LITERAL && isChain()) {
+            consumer.accept(new Chain(this));
+            return;
+        }
+        for (final Expression child : children) {
+            child.chains(consumer);
+        }
+    }
+
+    public static class Chain {
+
+        private final String[] parts;
+        private final int[] starts;
+        private final int[] ends;
+        private final int start;
+        private final int end;
+
+        private Chain(final Expression expression) {
+            final List<Expression> segments = new ArrayList<>();
+            for (Expression current = expression; current != null; current = current.kind == Kind.IDENTIFIER ? null : current.children[0]) {
+                segments.add(0, current);
+            }
+            parts = new String[segments.size()];
+            starts = new int[segments.size()];
+            ends = new int[segments.size()];
+            for (int i = 0; i < parts.length; i++) {
+                final Expression segment = segments.get(i);
+                switch (segment.kind) {
+                    case INDEX -> {
+                        final Expression literal = segment.children[1];
+                        parts[i] = literal.value.length() > 1 ? literal.value.substring(1, literal.value.length() - 1).replace("''", "'") : "";
+                        starts[i] = literal.start;
+                        ends[i] = literal.end;
+                    }
+                    case FILTER -> {
+                        parts[i] = "*";
+                        starts[i] = segment.end - 1;
+                        ends[i] = segment.end;
+                    }
+                    default -> {
+                        parts[i] = segment.value;
+                        starts[i] = segment.end - segment.value.length();
+                        ends[i] = segment.end;
+                    }
+                }
+            }
+            start = expression.start;
+            end = expression.end;
+        }
+
+        public String[] parts() {
+            return parts.clone();
+        }
+
+        public String part(final int index) {
+            return parts[index];
+        }
+
+        public int size() {
+            return parts.length;
+        }
+
+        public int start() {
+            return start;
+        }
+
+        public int end() {
+            return end;
+        }
+
+        public int start(final int index) {
+            return starts[index];
+        }
+
+        public int end(final int index) {
+            return ends[index];
+        }
+
+        //[inputs.] - the last property is missing
+        public boolean isComplete() {
+            return !parts[parts.length - 1].isEmpty();
+        }
+
+        //COMPLETION: parts before the part at the cursor, [prefix] gets the typed part of the current one
+        public String[] partsBefore(final int cursor, final String[] prefix) {
+            int current = 0;
+            while (current + 1 < parts.length && starts[current + 1] <= cursor) {
+                current++;
+            }
+            if (starts[current] <= cursor) {
+                prefix[0] = parts[current].substring(0, Math.max(0, Math.min(parts[current].length(), cursor - starts[current])));
+            }
+            return current == 0 ? new String[]{""} : Arrays.copyOf(parts, current);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Arrays;
+
+//TOKENS OF A ${{ }} EXPRESSION - offsets are absolute in the scanned text
+public class ExpressionLexer {
+
+    public enum TokenType {
+        IDENTIFIER,
+        NUMBER,
+        STRING,
+        DOT,
+        STAR,
+        LBRACKET,
+        RBRACKET,
+        LPAREN,
+        RPAREN,
+        COMMA,
+        OPERATOR,
+        ERROR,
+        END
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private final CharSequence text;
+    private int size;
+    private int[] types = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    private ExpressionLexer(final CharSequence text) {
+        this.text = text;
+    }
+
+    //[from, to] = range of the expression without ${{ }}
+    public static ExpressionLexer tokenize(final CharSequence text, final int from, final int to) {
+        final ExpressionLexer result = new ExpressionLexer(text);
+        int i = from;
+        while (i < to) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (isIdentifierStart(c)) {
+                final int start = i;
+                while (i < to && isIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+                result.add(TokenType.IDENTIFIER, start, i);
+            } else if (Character.isDigit(c)) {
+                i = result.number(i, to);
+            } else if (c == '\'') {
+                i = result.string(i, to);
+            } else {
+                i = result.symbol(c, i, to);
+            }
+        }
+        result.add(TokenType.END, to, to);
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(final int token) {
+        return TYPES[types[token]];
+    }
+
+    public int start(final int token) {
+        return starts[token];
+    }
+
+    public int end(final int token) {
+        return ends[token];
+    }
+
+    public String text(final int token) {
+        return text.subSequence(starts[token], ends[token]).toString();
+    }
+
+    public boolean is(final int token, final TokenType type, final String value) {
+        return type(token) == type && (ends[token] - starts[token]) == value.length() && text(token).equals(value);
+    }
+
+    //GITHUB ALLOWS [-] IN NAMES e.g. [steps.my-step.outputs]
+    public static boolean isIdentifierStart(final char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    public static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private int number(final int from, final int to) {
+        int i = from;
+        if (i + 1 < to && text.charAt(i) == '0' && (text.charAt(i + 1) == 'x' || text.charAt(i + 1) == 'X')) {
+            i += 2;
+            while (i < to && Character.digit(text.charAt(i), 16) != -1) {
+                i++;
+            }
+        } else {
+            while (i < to && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+                i++;
+            }
+            if (i < to && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+                i++;
+                if (i < to && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                    i++;
+                }
+                while (i < to && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        add(TokenType.NUMBER, from, i);
+        return i;
+    }
+
+    //'it''s' - quotes are escaped by doubling, unterminated strings end at the expression end
+    private int string(final int from, final int to) {
+        int i = from + 1;
+        while (i < to) {
+            if (text.charAt(i) == '\'') {
+                if (i + 1 < to && text.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                add(TokenType.STRING, from, i + 1);
+                return i + 1;
+            }
+            i++;
+        }
+        add(TokenType.ERROR, from, to);
+        return to;
+    }
+
+    private int symbol(final char c, final int from, final int to) {
+        final char next = from + 1 < to ? text.charAt(from + 1) : 0;
+        switch (c) {
+            case '.' -> add(TokenType.DOT, from, from + 1);
+            case '*' -> add(TokenType.STAR, from, from + 1);
+            case '[' -> add(TokenType.LBRACKET, from, from + 1);
+            case ']' -> add(TokenType.RBRACKET, from, from + 1);
+            case '(' -> add(TokenType.LPAREN, from, from + 1);
+            case ')' -> add(TokenType.RPAREN, from, from + 1);
+            case ',' -> add(TokenType.COMMA, from, from + 1);
+            case '=', '!', '<', '>' -> {
+                final int length = next == '=' ? 2 : 1;
+                add(c == '=' && length == 1 ? TokenType.ERROR : TokenType.OPERATOR, from, from + length);
+                return from + length;
+            }
+            case '&', '|' -> {
+                final int length = next == c ? 2 : 1;
+                add(length == 2 ? TokenType.OPERATOR : TokenType.ERROR, from, from + length);
+                return from + length;
+            }
+            default -> add(TokenType.ERROR, from, from + 1);
+        }
+        return from + 1;
+    }
+
+    private void add(final TokenType type, final int start, final int end) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        types[size] = type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+}
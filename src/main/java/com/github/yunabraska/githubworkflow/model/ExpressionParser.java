@@ -0,0 +1,165 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.model.Expression.Kind;
+import com.github.yunabraska.githubworkflow.model.ExpressionLexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//RECURSIVE DESCENT: or > and > equality > comparison > unary > postfix [.property .* [index] (call)] > primary
+//never fails - unexpected tokens become ERROR nodes, missing properties are empty [steps.]
+public class ExpressionParser {
+
+    private final ExpressionLexer tokens;
+    private int position;
+
+    private ExpressionParser(final ExpressionLexer tokens) {
+        this.tokens = tokens;
+    }
+
+    //[from, to] = range of the expression without ${{ }}
+    public static List<Expression> parse(final CharSequence text, final int from, final int to) {
+        final ExpressionParser parser = new ExpressionParser(ExpressionLexer.tokenize(text, from, to));
+        final List<Expression> result = new ArrayList<>();
+        while (parser.type() != TokenType.END) {
+            final int before = parser.position;
+            result.add(parser.or());
+            if (parser.position == before) {
+                parser.position++;
+            }
+        }
+        return result;
+    }
+
+    private Expression or() {
+        Expression left = and();
+        while (isOperator("||")) {
+            left = binary(left, "||", and());
+        }
+        return left;
+    }
+
+    private Expression and() {
+        Expression left = equality();
+        while (isOperator("&&")) {
+            left = binary(left, "&&", equality());
+        }
+        return left;
+    }
+
+    private Expression equality() {
+        Expression left = comparison();
+        for (String operator = operator("==", "!="); operator != null; operator = operator("==", "!=")) {
+            left = binary(left, operator, comparison());
+        }
+        return left;
+    }
+
+    private Expression comparison() {
+        Expression left = unary();
+        for (String operator = operator("<", "<=", ">", ">="); operator != null; operator = operator("<", "<=", ">", ">=")) {
+            left = binary(left, operator, unary());
+        }
+        return left;
+    }
+
+    private static Expression binary(final Expression left, final String operator, final Expression right) {
+        return new Expression(Kind.BINARY, operator, left.start(), right.end(), left, right);
+    }
+
+    private Expression unary() {
+        if (isOperator("!")) {
+            final int start = tokens.start(position - 1);
+            final Expression operand = unary();
+            return new Expression(Kind.UNARY, "!", start, operand.end(), operand);
+        }
+        return postfix();
+    }
+
+    private Expression postfix() {
+        Expression result = primary();
+        while (true) {
+            if (type() == TokenType.DOT) {
+                final int dotEnd = tokens.end(position++);
+                if (type() == TokenType.IDENTIFIER) {
+                    result = new Expression(Kind.PROPERTY, tokens.text(position), result.start(), tokens.end(position++), result);
+                } else if (type() == TokenType.STAR) {
+                    result = new Expression(Kind.FILTER, "*", result.start(), tokens.end(position++), result);
+                } else {
+                    result = new Expression(Kind.PROPERTY, "", result.start(), dotEnd, result);
+                }
+            } else if (type() == TokenType.LBRACKET) {
+                position++;
+                final Expression index = or();
+                final int end = type() == TokenType.RBRACKET ? tokens.end(position++) : index.end();
+                result = new Expression(Kind.INDEX, null, result.start(), end, result, index);
+            } else if (type() == TokenType.LPAREN && result.kind() == Kind.IDENTIFIER) {
+                position++;
+                final List<Expression> arguments = new ArrayList<>();
+                while (type() != TokenType.RPAREN && type() != TokenType.END) {
+                    final int before = position;
+                    arguments.add(or());
+                    if (type() == TokenType.COMMA) {
+                        position++;
+                    } else if (position == before) {
+                        break;
+                    }
+                }
+                final int end = type() == TokenType.RPAREN ? tokens.end(position++) : tokens.start(position);
+                result = new Expression(Kind.CALL, result.value(), result.start(), end, arguments.toArray(Expression[]::new));
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private Expression primary() {
+        final int token = position;
+        switch (type()) {
+            case IDENTIFIER -> {
+                position++;
+                final String name = tokens.text(token);
+                final boolean literal = "true".equals(name) || "false".equals(name) || "null".equals(name);
+                return new Expression(literal ? Kind.LITERAL : Kind.IDENTIFIER, name, tokens.start(token), tokens.end(token));
+            }
+            case NUMBER, STRING -> {
+                position++;
+                return new Expression(Kind.LITERAL, tokens.text(token), tokens.start(token), tokens.end(token));
+            }
+            case LPAREN -> {
+                position++;
+                final Expression inner = or();
+                if (type() == TokenType.RPAREN) {
+                    position++;
+                }
+                return inner;
+            }
+            case END -> {
+                return new Expression(Kind.ERROR, "", tokens.start(token), tokens.start(token));
+            }
+            default -> {
+                position++;
+                return new Expression(Kind.ERROR, tokens.text(token), tokens.start(token), tokens.end(token));
+            }
+        }
+    }
+
+    private TokenType type() {
+        return tokens.type(position);
+    }
+
+    private boolean isOperator(final String operator) {
+        return operator(operator) != null;
+    }
+
+    //CONSUMES THE NEXT TOKEN WHEN IT IS ONE OF THE OPERATORS
+    private String operator(final String... operators) {
+        for (final String operator : operators) {
+            if (tokens.is(position, TokenType.OPERATOR, operator)) {
+                position++;
+                return operator;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.model.Expression.Chain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.yunabraska.githubworkflow.model.YamlElement.CURSOR_STRING;
+import static java.util.Collections.unmodifiableList;
+
+//PARSED SCALAR: expressions of all ${{ }} in a text [implicit = the whole text is an expression e.g. if: a == b]
+//cached by text - completion, validation and the reference index share one parse
+public class ExpressionText {
+
+    public static final String EXPRESSION_START = "${{";
+    public static final String EXPRESSION_END = "}}";
+    //BOUNDED LRU: the text is the key - the ranges are offsets into exactly this text
+    public static final int MAX_CACHE_SIZE = 4096;
+    private static final LruCache<String, ExpressionText> CACHE = new LruCache<>(MAX_CACHE_SIZE);
+    private static final LruCache<String, ExpressionText> IMPLICIT_CACHE = new LruCache<>(MAX_CACHE_SIZE);
+
+    //INNER RANGES [start, end] of the expressions without ${{ }}
+    private final int[] ranges;
+    private final List<Expression> expressions = new ArrayList<>();
+    private final List<Chain> chains = new ArrayList<>();
+
+    private ExpressionText(final String text, final boolean implicit) {
+        int[] result = new int[4];
+        int size = 0;
+        if (implicit && !text.contains(EXPRESSION_START)) {
+            result[size++] = 0;
+            result[size++] = text.length();
+        } else {
+            for (int start = text.indexOf(EXPRESSION_START); start != -1; start = text.indexOf(EXPRESSION_START, start)) {
+                start += EXPRESSION_START.length();
+                final int end = text.indexOf(EXPRESSION_END, start);
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = start;
+                result[size++] = end == -1 ? text.length() : end;
+                if (end == -1) {
+                    break;
+                }
+                start = end + EXPRESSION_END.length();
+            }
+        }
+        ranges = Arrays.copyOf(result, size);
+        for (int i = 0; i < ranges.length; i += 2) {
+            ExpressionParser.parse(text, ranges[i], ranges[i + 1]).forEach(expression -> {
+                expressions.add(expression);
+                expression.chains(chains::add);
+            });
+        }
+    }
+
+    //COMPLETION COPIES [CURSOR_STRING] are parsed but not cached - each keystroke is another text
+    public static ExpressionText expressionTextOf(final CharSequence text, final boolean implicit) {
+        final String value = text == null ? "" : text.toString();
+        if (value.contains(CURSOR_STRING)) {
+            return new ExpressionText(value, implicit);
+        }
+        final LruCache<String, ExpressionText> cache = implicit ? IMPLICIT_CACHE : CACHE;
+        final ExpressionText cached = cache.get(value);
+        if (cached != null) {
+            return cached;
+        }
+        return cache.putIfAbsent(value, new ExpressionText(value, implicit));
+    }
+
+    //[if] VALUES ARE EXPRESSIONS WITHOUT ${{ }}
+    public static boolean isImplicit(final YamlElement element) {
+        return element != null && element.parent() != null && "if".equals(element.parent().key());
+    }
+
+    public List<Expression> expressions() {
+        return unmodifiableList(expressions);
+    }
+
+    public List<Chain> chains() {
+        return unmodifiableList(chains);
+    }
+
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    public boolean inExpression(final int offset) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] <= offset && offset <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Optional<Chain> chainAt(final int offset) {
+        return chains.stream().filter(chain -> chain.start() <= offset && offset <= chain.end()).findFirst();
+    }
+}
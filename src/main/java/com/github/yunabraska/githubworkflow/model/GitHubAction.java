@@ -1,231 +1,218 @@
 package com.github.yunabraska.githubworkflow.model;
 
+import com.github.yunabraska.githubworkflow.completion.CacheEntry;
 import com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
-import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.PsiManager;
-import org.jetbrains.yaml.YAMLFileType;
 import org.jetbrains.yaml.psi.YAMLFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.StringJoiner;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
-import static com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils.cachePath;
 import static com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils.downloadAction;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.ACTION_CACHE;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.CACHE_MAX_AGE;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.CACHE_ONE_DAY;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.CACHE_TEN_MINUTES;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_INPUTS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ON;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_OUTPUTS;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.WORKFLOW_CACHE;
-import static com.github.yunabraska.githubworkflow.model.YamlElement.CURSOR_STRING;
+import static com.github.yunabraska.githubworkflow.model.WorkflowContext.workflowContextOf;
+import static com.github.yunabraska.githubworkflow.model.YamlElement.createYamlElement;
 import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.hasText;
-import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.yamlOf;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Optional.ofNullable;
 
 @SuppressWarnings("unused")
 public class GitHubAction {
 
-    private final Map<String, String> inputs = new ConcurrentHashMap<>();
-    private final Map<String, String> outputs = new ConcurrentHashMap<>();
-    private final AtomicLong expiration = new AtomicLong(0);
-    //TODO: get Tags for autocompletion
-    private final List<String> tags = new CopyOnWriteArrayList<>();
-    private final AtomicReference<String> ref = new AtomicReference<>(null);
-    private final AtomicReference<String> slug = new AtomicReference<>(null);
-    private final AtomicReference<String> sub = new AtomicReference<>("");
-    private final AtomicReference<String> actionName = new AtomicReference<>(null);
-    private final AtomicReference<String> downloadUrl = new AtomicReference<>(null);
-    private final AtomicReference<String> uses = new AtomicReference<>(null);
-    private final AtomicBoolean isAvailable = new AtomicBoolean(false);
-    private final AtomicBoolean isAction = new AtomicBoolean(false);
-    private final AtomicBoolean isLocal = new AtomicBoolean(false);
+    public enum Status {
+        UNRESOLVED,
+        RESOLVING,
+        AVAILABLE,
+        UNAVAILABLE
+    }
+
+    //NULL FOR AN EMPTY [uses]
+    private final ActionRef actionRef;
+    //RESOLUTION STATE: one immutable value swapped atomically - only the thread which wins [RESOLVING] or [refreshing] downloads
+    //STALE WHILE REVALIDATE: an expired state is served until its refresh swaps it, dropped after [CACHE_MAX_AGE]
+    private final AtomicReference<State> state = new AtomicReference<>(State.UNRESOLVED);
     private static final Logger LOG = Logger.getInstance(GitHubAction.class);
 
-    public static GitHubAction getGitHubAction(final String uses) {
-        try {
-            final String cleanedUses = uses == null ? null : uses.replace(CURSOR_STRING + " ", "").trim();
-            GitHubAction gitHubAction = ACTION_CACHE.getOrDefault(uses, null);
-            if (gitHubAction == null || gitHubAction.expiration() < System.currentTimeMillis()) {
-                ofNullable(gitHubAction).ifPresent(GitHubAction::deleteFile);
-                gitHubAction = new GitHubAction(cleanedUses);
-                ACTION_CACHE.put(uses, gitHubAction);
-            }
-            return gitHubAction;
-        } catch (final Exception e) {
-            return new GitHubAction(null);
-        }
+    GitHubAction(final ActionRef actionRef) {
+        this.actionRef = actionRef;
     }
 
     public Map<String, String> inputs(final Project project) {
-        if (isLocal.get()) {
-            return extractLocalParameters(project, downloadUrl.get(), FIELD_INPUTS);
+        if (isLocal()) {
+            return extractLocalParameters(project, actionRef.downloadUrl(), FIELD_INPUTS);
         }
-        return inputs;
+        return state.get().inputs;
     }
 
     public Map<String, String> outputs(final Project project) {
-        if (isLocal.get()) {
-            return extractLocalParameters(project, downloadUrl.get(), FIELD_OUTPUTS);
+        if (isLocal()) {
+            return extractLocalParameters(project, actionRef.downloadUrl(), FIELD_OUTPUTS);
         }
-        return outputs;
+        return state.get().outputs;
+    }
+
+    public ActionRef actionRef() {
+        return actionRef;
+    }
+
+    public Status status() {
+        return state.get().status;
     }
 
     public long expiration() {
-        return expiration.get();
+        return state.get().expiration;
+    }
+
+    //HARD EXPIRATION - until then the expired state is served
+    public long maxAge() {
+        return state.get().maxAge;
+    }
+
+    public boolean isStale() {
+        return state.get().isStale();
+    }
+
+    //PARSED [action.yml] OR WORKFLOW - null until resolved, goes with the action
+    public WorkflowContext context() {
+        return state.get().context;
     }
 
-    public List<String> tags() {
-        return tags;
+    public boolean needsResolve() {
+        return actionRef != null && state.get().needsResolve();
     }
 
     public String ref() {
-        return ref.get();
+        return ofNullable(actionRef).map(ActionRef::ref).orElse(null);
     }
 
     public String slug() {
-        return slug.get();
+        return ofNullable(actionRef).map(ActionRef::slug).orElse(null);
     }
 
     public String actionName() {
-        return actionName.get();
+        return ofNullable(actionRef).map(ActionRef::name).orElse(null);
     }
 
     public String sub() {
-        return sub.get();
+        return ofNullable(actionRef).map(ActionRef::sub).orElse("");
     }
 
     public boolean isAvailable() {
-        return isAvailable.get();
+        return state.get().status == Status.AVAILABLE;
     }
 
     public boolean isAction() {
-        return isAction.get();
+        return actionRef != null && actionRef.isAction();
+    }
+
+    public boolean isLocal() {
+        return actionRef != null && actionRef.isLocal();
     }
 
     public String uses() {
-        return uses.get();
+        return ofNullable(actionRef).map(ActionRef::uses).orElse(null);
     }
 
     public String toUrl() {
-        return isAction.get() ? toActionYamlUrl() : toWorkflowYamlUrl();
+        return ofNullable(actionRef).map(ActionRef::toUrl).orElse(null);
     }
 
     public String toRawUrl() {
-        return isAction.get() ? toRawActionYamlUrl() : toRawWorkflowYamlUrl();
+        return ofNullable(actionRef).map(ActionRef::toRawUrl).orElse(null);
     }
 
     public String marketplaceUrl() {
-        return ("https://github.com/marketplace/" + slug.get());
-    }
-
-    private String toActionYamlUrl() {
-        return (ref.get() != null && slug.get() != null && sub.get() != null) ? "https://github.com/" + slug.get() + "/blob/" + ref.get() + sub.get() + "/action.yml" : null;
-    }
-
-    private String toRawActionYamlUrl() {
-        return (ref.get() != null && slug.get() != null && sub.get() != null) ? "https://raw.githubusercontent.com/" + slug.get() + "/" + ref.get() + sub.get() + "/action.yml" : null;
-    }
-
-    private String toWorkflowYamlUrl() {
-        return (ref.get() != null && slug.get() != null) ? "https://github.com/" + slug.get() + "/blob/" + ref.get() + "/.github/workflows/" + actionName : null;
+        return ofNullable(actionRef).map(ActionRef::marketplaceUrl).orElse(null);
     }
 
-    private String toRawWorkflowYamlUrl() {
-        return (ref.get() != null && slug.get() != null) ? "https://raw.githubusercontent.com/" + slug.get() + "/" + ref.get() + "/.github/workflows/" + actionName : null;
-    }
-
-    private String toGitHubUrl() {
-        return (slug.get() != null && ref.get() != null) ? "https://github.com/" + slug.get() + "/tree" + ref.get() : null;
-    }
-
-    private GitHubAction(final String uses) {
-        if (uses != null) {
-            final int tagIndex = uses.indexOf("@");
-            final int userNameIndex = uses.indexOf("/");
-            final int repoNameIndex = uses.indexOf("/", userNameIndex + 1);
-            this.uses.set(uses);
-            isLocal.set(tagIndex == -1);
-            ref.set(tagIndex != -1 ? uses.substring(tagIndex + 1) : null);
-            isAction.set(isLocal.get() || (!uses.contains(".yaml") && !uses.contains(".yml") && !uses.contains(".action.y")));
-            if (tagIndex != -1 && userNameIndex < tagIndex) {
-                slug.set(uses.substring(0, repoNameIndex > 0 ? repoNameIndex : tagIndex));
-                if (!isAction.get()) {
-                    actionName.set(uses.substring(uses.lastIndexOf("/") + 1, tagIndex));
-                } else {
-                    sub.set(repoNameIndex < tagIndex && repoNameIndex > 0 ? "/" + uses.substring(repoNameIndex + 1, tagIndex) : "");
-                    actionName.set(uses.substring(userNameIndex + 1, tagIndex));
-                }
-            } else {
-                actionName.set(uses);
+    //NON-BLOCKING: completes once the state is set - right away if another thread already resolves
+    //a stale state keeps being served during its refresh
+    public CompletableFuture<Void> resolve(final Project project) {
+        final State current = state.get();
+        if (actionRef == null || !current.needsResolve()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!state.compareAndSet(current, current.status == Status.UNRESOLVED ? State.RESOLVING : current.asRefreshing())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            if (isLocal()) {
+                state.set(localState(project));
+                return CompletableFuture.completedFuture(null);
             }
-            downloadUrl.set(isLocal.get() ? uses + "/action.yml" : toRawUrl());
+            return downloadAction(actionRef)
+                    .thenApply(entry -> remoteState(current, entry))
+                    .exceptionally(this::failedState)
+                    .thenAccept(next -> state.set(refreshed(current, next)));
+        } catch (final Exception e) {
+            state.set(refreshed(current, failedState(e)));
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    public void resolve(final Project project) {
-        if (!isAvailable.get()) {
-            setActionParameters(project, downloadUrl.get());
-        }
+    //FAILED REFRESH: keep the last available state, retry later
+    private static State refreshed(final State previous, final State next) {
+        return next.status == Status.AVAILABLE || previous.status != Status.AVAILABLE ? next : previous.retryAt(System.currentTimeMillis() + CACHE_TEN_MINUTES);
     }
 
     public void deleteCache() {
-        isAvailable.set(false);
-        WORKFLOW_CACHE.remove(workFlowCacheId());
+        state.set(State.UNRESOLVED);
         deleteFile();
     }
 
     private void deleteFile() {
-        Optional.of(cachePath(this)).filter(Files::exists).ifPresent(path -> {
-            try {
-                Files.deleteIfExists(path);
-            } catch (final IOException ignored) {
-                // ignored
-            }
-        });
+        ofNullable(actionRef).map(GitHubWorkflowUtils::cachePath).ifPresent(CacheEntry::delete);
     }
 
-    private void setActionParameters(final Project project, final String downloadUrl) {
-        try {
-            if (isLocal.get()) {
-                isAvailable.set(ofNullable(project)
-                        .map(ProjectUtil::guessProjectDir)
-                        .map(dir -> dir.findFileByRelativePath(downloadUrl))
-                        .isPresent());
-                expiration.set(System.currentTimeMillis() + CACHE_TEN_MINUTES);
-                WORKFLOW_CACHE.put(workFlowCacheId(), new WorkflowContext(null));
-            } else {
-                extractActionParameters(project, downloadAction(downloadUrl, this));
-            }
-        } catch (final Exception e) {
-            LOG.warn("Failed to set parameters [" + this.uses.get() + "]", e);
-            isAvailable.set(false);
-            expiration.set(System.currentTimeMillis() + CACHE_TEN_MINUTES);
+    private State localState(final Project project) {
+        final boolean available = ofNullable(project)
+                .map(ProjectUtil::guessProjectDir)
+                .map(dir -> dir.findFileByRelativePath(actionRef.downloadUrl()))
+                .isPresent();
+        return new State(available ? Status.AVAILABLE : Status.UNAVAILABLE, System.currentTimeMillis() + CACHE_TEN_MINUTES, emptyMap(), emptyMap());
+    }
+
+    //MAX AGE FROM THE LAST SERVER CONFIRMATION - a stale entry keeps the previous state and retries soon
+    private State remoteState(final State previous, final CacheEntry entry) {
+        final long now = System.currentTimeMillis();
+        if (entry != null && entry.isStale() && previous.status == Status.AVAILABLE) {
+            return previous.retryAt(now + CACHE_TEN_MINUTES);
+        }
+        final long maxAge = entry == null ? 0 : entry.validated() + CACHE_MAX_AGE;
+        final String content = entry == null || maxAge < now ? null : entry.content();
+        if (!hasText(content)) {
+            return new State(Status.UNAVAILABLE, now + CACHE_TEN_MINUTES, emptyMap(), emptyMap());
         }
+        final WorkflowContext context = contextOf(content, previous.context);
+        return new State(
+                Status.AVAILABLE,
+                now + (entry.isStale() ? CACHE_TEN_MINUTES : CACHE_ONE_DAY),
+                maxAge,
+                getActionParameters(context, FIELD_INPUTS, isAction()),
+                getActionParameters(context, FIELD_OUTPUTS, isAction()),
+                context,
+                false
+        );
     }
 
-    private void extractActionParameters(final Project project, final String content) {
-        isAvailable.set(hasText(content));
-        expiration.set(System.currentTimeMillis() + (hasText(content) ? CACHE_ONE_DAY : CACHE_TEN_MINUTES));
-        final WorkflowContext context = contextOf(project, workFlowCacheId(), content);
-        inputs.putAll(getActionParameters(context, FIELD_INPUTS, isAction.get()));
-        outputs.putAll(getActionParameters(context, FIELD_OUTPUTS, isAction.get()));
+    private State failedState(final Throwable e) {
+        LOG.warn("Failed to set parameters [" + actionRef.uses() + "]", e);
+        return new State(Status.UNAVAILABLE, System.currentTimeMillis() + CACHE_TEN_MINUTES, emptyMap(), emptyMap());
     }
 
     private Map<String, String> extractLocalParameters(final Project project, final String path, final String nodeKey) {
@@ -239,45 +226,77 @@ public class GitHubAction {
 //                    .map(children -> children.length > 0 ? children[0] : null)
                 .map(YamlElementHelper::yamlOf)
                 .map(YamlElement::context)
-                .map(context -> getActionParameters(context, nodeKey, isAction.get()))
+                .map(context -> getActionParameters(context, nodeKey, isAction()))
                 .ifPresent(result::set));
         return result.get();
     }
 
-    private String workFlowCacheId() {
-        return actionName() + "_" + ref();
-    }
-
     private Map<String, String> getActionParameters(final WorkflowContext context, final String nodeKey, final boolean action) {
-        return context.root()
+        return ofNullable(context.root()).map(root -> root
                 .findChildNodes(child ->
                         (ofNullable(child.parent()).filter(parent -> nodeKey.equals(parent.key())).isPresent())
                                 && (action || ofNullable(child.parent()).map(YamlElement::parent).map(YamlElement::parent).filter(parent -> FIELD_ON.equals(parent.key())).isPresent())
                 )
                 .stream()
                 .filter(child -> hasText(child.keyOrIdOrName()))
-                .collect(Collectors.toMap(YamlElement::keyOrIdOrName, GitHubWorkflowUtils::getDescription, (existing, replacement) -> existing));
-    }
-
-    private WorkflowContext contextOf(final Project project, final String key, final String text) {
-        // READ CONTEXT
-        final AtomicReference<WorkflowContext> contextRef = new AtomicReference<>();
-        ApplicationManager.getApplication().runReadAction(() -> {
-            try {
-                final WorkflowContext context = yamlOf(PsiFileFactory.getInstance(project).createFileFromText(key, YAMLFileType.YML, text.replaceAll("\r?\\n|\\r", "\n"))).context();
-                contextRef.set(context);
-            } catch (final Exception e) {
-                final WorkflowContext defaultValue = new YamlElement(-1, -1, null, null, true).context();
-                contextRef.set(key == null ? defaultValue : WORKFLOW_CACHE.getOrDefault(key, defaultValue));
-            }
-        });
+                .collect(Collectors.toMap(YamlElement::keyOrIdOrName, GitHubWorkflowUtils::getDescription, (existing, replacement) -> existing))
+        ).map(map -> unmodifiableMap(map)).orElse(emptyMap());
+    }
+
+    //READ CONTEXT - no PSI and no read action needed, the previous context if the text doesn't parse
+    private static WorkflowContext contextOf(final String text, final WorkflowContext previous) {
+        try {
+            return YamlScanner.yamlOf(text).context();
+        } catch (final Exception e) {
+            return previous != null ? previous : workflowContextOf(createYamlElement(-1, -1, null, null));
+        }
+    }
+
+    //IMMUTABLE RESOLUTION STATE
+    private static final class State {
+
+        private static final State UNRESOLVED = new State(Status.UNRESOLVED, 0, emptyMap(), emptyMap());
+        private static final State RESOLVING = new State(Status.RESOLVING, 0, emptyMap(), emptyMap());
+        private final Status status;
+        private final long expiration;
+        //ONLY AVAILABLE STATES ARE SERVED STALE
+        private final long maxAge;
+        private final Map<String, String> inputs;
+        private final Map<String, String> outputs;
+        //REMOTE ONLY - evicted together with the action
+        private final WorkflowContext context;
+        private final boolean refreshing;
+
+        private State(final Status status, final long expiration, final Map<String, String> inputs, final Map<String, String> outputs) {
+            this(status, expiration, status == Status.AVAILABLE ? System.currentTimeMillis() + CACHE_MAX_AGE : expiration, inputs, outputs, null, false);
+        }
 
-        final WorkflowContext context = contextRef.get();
-        if (context != null && key != null) {
-            WORKFLOW_CACHE.put(key, context);
+        private State(final Status status, final long expiration, final long maxAge, final Map<String, String> inputs, final Map<String, String> outputs, final WorkflowContext context, final boolean refreshing) {
+            this.status = status;
+            this.expiration = expiration;
+            this.maxAge = maxAge;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.context = context;
+            this.refreshing = refreshing;
         }
 
-        return context;
+        private boolean isStale() {
+            return expiration > 0 && expiration < System.currentTimeMillis();
+        }
+
+        //UNAVAILABLE: no retry before its expiration - typos and missing tags don't hit the network on every reparse
+        private boolean needsResolve() {
+            return status != Status.RESOLVING && !refreshing && (status == Status.UNRESOLVED || isStale());
+        }
+
+        private State asRefreshing() {
+            return new State(status, expiration, maxAge, inputs, outputs, context, true);
+        }
+
+        private State retryAt(final long time) {
+            return new State(status, Math.min(time, maxAge), maxAge, inputs, outputs, context, false);
+        }
     }
 
     @Override
@@ -285,18 +304,18 @@ public class GitHubAction {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         final GitHubAction that = (GitHubAction) o;
-        return Objects.equals(uses(), that.uses());
+        return Objects.equals(actionRef, that.actionRef);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uses());
+        return Objects.hashCode(actionRef);
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", GitHubAction.class.getSimpleName() + "[", "]")
-                .add("uses=" + uses)
+                .add("uses=" + uses())
                 .toString();
     }
 }
@@ -0,0 +1,54 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//BOUNDED LRU: a full cache drops the least recently used entry - thread safe, one lock per cache
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+
+    public LruCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(final K key) {
+        return entries.get(key);
+    }
+
+    //NULL VALUES ARE NOT CACHED
+    public synchronized V computeIfAbsent(final K key, final Function<? super K, ? extends V> mapping) {
+        return entries.computeIfAbsent(key, mapping);
+    }
+
+    public synchronized V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return entries.compute(key, remapping);
+    }
+
+    //INTERNING: the cached equal value or the given one
+    public synchronized V putIfAbsent(final K key, final V value) {
+        final V previous = entries.putIfAbsent(key, value);
+        return previous == null ? value : previous;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+//INTERVAL INDEX: elements sorted by start offset, implicit binary tree with the max end offset of each subtree
+public class OffsetIndex {
+
+    private final YamlTree tree;
+    private final int[] nodes;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] orders;
+    private final int[] maxEnds;
+
+    public static OffsetIndex offsetIndexOf(final YamlElement scope) {
+        final YamlTree tree = scope.tree();
+        final int[][] preOrder = {new int[64]};
+        final int[] size = {0};
+        tree.walk(scope.node(), node -> {
+            final int start = tree.start(node);
+            if (start > -1 && tree.end(node) >= start) {
+                if (size[0] == preOrder[0].length) {
+                    preOrder[0] = Arrays.copyOf(preOrder[0], size[0] * 2);
+                }
+                preOrder[0][size[0]++] = node;
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        //SORT KEY: start offset, then pre order position - keeps the tree order for elements with the same start
+        final long[] sorted = new long[size[0]];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = ((long) tree.start(preOrder[0][i]) << 32) | i;
+        }
+        Arrays.sort(sorted);
+        return new OffsetIndex(tree, preOrder[0], sorted);
+    }
+
+    private OffsetIndex(final YamlTree tree, final int[] preOrder, final long[] sorted) {
+        final int size = sorted.length;
+        this.tree = tree;
+        nodes = new int[size];
+        starts = new int[size];
+        ends = new int[size];
+        orders = new int[size];
+        maxEnds = new int[size];
+        for (int i = 0; i < size; i++) {
+            final int order = (int) sorted[i];
+            nodes[i] = preOrder[order];
+            starts[i] = tree.start(nodes[i]);
+            ends[i] = tree.end(nodes[i]);
+            orders[i] = order;
+        }
+        buildMaxEnds(0, size);
+    }
+
+    //SMALLEST ELEMENT CONTAINING THE OFFSET
+    public Optional<YamlElement> closest(final int offset) {
+        final int[] result = {-1};
+        stab(0, nodes.length, offset, i -> {
+            final int best = result[0];
+            final int length = ends[i] - starts[i];
+            final int bestLength = best == -1 ? Integer.MAX_VALUE : ends[best] - starts[best];
+            if (length < bestLength || (length == bestLength && orders[i] < orders[best])) {
+                result[0] = i;
+            }
+        });
+        return result[0] == -1 ? Optional.empty() : Optional.of(tree.element(nodes[result[0]]));
+    }
+
+    //FIRST ELEMENT (TREE ORDER) CONTAINING THE RANGE
+    public Optional<YamlElement> containing(final int startIndexAbs, final int endIndexAbs, final Predicate<YamlElement> filter) {
+        final int[] result = {-1};
+        stab(0, nodes.length, startIndexAbs, i -> {
+            if (ends[i] >= endIndexAbs && (result[0] == -1 || orders[i] < orders[result[0]]) && filter.test(tree.element(nodes[i]))) {
+                result[0] = i;
+            }
+        });
+        return result[0] == -1 ? Optional.empty() : Optional.of(tree.element(nodes[result[0]]));
+    }
+
+    //FIRST ELEMENT STARTING AT OR AFTER THE OFFSET
+    public Optional<YamlElement> next(final int offset) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < nodes.length ? Optional.of(tree.element(nodes[low])) : Optional.empty();
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    private int buildMaxEnds(final int low, final int high) {
+        if (low >= high) {
+            return Integer.MIN_VALUE;
+        }
+        final int mid = (low + high) >>> 1;
+        maxEnds[mid] = Math.max(ends[mid], Math.max(buildMaxEnds(low, mid), buildMaxEnds(mid + 1, high)));
+        return maxEnds[mid];
+    }
+
+    private void stab(final int low, final int high, final int offset, final IntConsumer consumer) {
+        if (low >= high) {
+            return;
+        }
+        final int mid = (low + high) >>> 1;
+        if (maxEnds[mid] < offset) {
+            return;
+        }
+        stab(low, mid, offset, consumer);
+        if (starts[mid] <= offset) {
+            if (ends[mid] >= offset) {
+                consumer.accept(mid);
+            }
+            stab(mid + 1, high, offset, consumer);
+        }
+    }
+}
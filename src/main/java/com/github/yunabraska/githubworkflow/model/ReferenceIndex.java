@@ -0,0 +1,135 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.model.Expression.Chain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ENVS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_INPUTS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_JOBS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_NEEDS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_SECRETS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_VARS;
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.expressionTextOf;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+//REVERSE INDEX: target [needs.X.outputs.Y, steps.X.outputs.Y, jobs.X.outputs.Y, env.X, secrets.X, ...] -> references in the expressions of the text nodes
+//every prefix with at least two parts is a target e.g. [needs.X] finds all references to the job X
+public class ReferenceIndex {
+
+    public static final Set<String> SCOPES = Set.of(FIELD_NEEDS, FIELD_STEPS, FIELD_JOBS, FIELD_ENVS, FIELD_SECRETS, FIELD_INPUTS, FIELD_VARS);
+    private final Map<String, List<Reference>> references = new HashMap<>();
+
+    public static ReferenceIndex referenceIndexOf(final WorkflowContext context) {
+        final ReferenceIndex result = new ReferenceIndex();
+        final YamlElement root = context.root();
+        if (root == null) {
+            return result;
+        }
+        final YamlTree tree = root.tree();
+        tree.walk(root.node(), node -> {
+            if (tree.firstChild(node) == YamlTree.NONE && tree.start(node) > -1) {
+                final CharSequence text = tree.textSequence(node);
+                if (text != null) {
+                    result.add(tree, node, text);
+                }
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        return result;
+    }
+
+    private void add(final YamlTree tree, final int node, final CharSequence text) {
+        final int parent = tree.parent(node);
+        final boolean implicit = parent != YamlTree.NONE && "if".equals(tree.key(parent));
+        final int jobNode = tree.ancestor(node, YamlTree.ROLE_JOB);
+        final String jobId = jobNode == YamlTree.NONE ? null : tree.key(jobNode);
+        final boolean inOn = tree.ancestor(node, YamlTree.ROLE_ON) != YamlTree.NONE;
+        for (final Chain chain : expressionTextOf(text, implicit).chains()) {
+            if (chain.size() < 2 || !SCOPES.contains(chain.part(0))) {
+                continue;
+            }
+            final Reference reference = new Reference(
+                    tree.element(node),
+                    chain.parts(),
+                    tree.start(node) + chain.start(),
+                    tree.start(node) + chain.end(),
+                    jobId,
+                    inOn
+            );
+            final StringBuilder target = new StringBuilder(chain.part(0));
+            for (int i = 1; i < chain.size(); i++) {
+                target.append('.').append(chain.part(i));
+                references.computeIfAbsent(target.toString(), key -> new ArrayList<>()).add(reference);
+            }
+        }
+    }
+
+    public List<Reference> references(final String target) {
+        final List<Reference> result = references.get(target);
+        return result == null ? emptyList() : unmodifiableList(result);
+    }
+
+    public boolean isReferenced(final String target) {
+        return references.containsKey(target);
+    }
+
+    public int size() {
+        return references.size();
+    }
+
+    public static class Reference {
+
+        private final YamlElement element;
+        private final String[] parts;
+        private final int startIndexAbs;
+        private final int endIndexAbs;
+        private final String jobId;
+        private final boolean inOn;
+
+        public Reference(final YamlElement element, final String[] parts, final int startIndexAbs, final int endIndexAbs, final String jobId, final boolean inOn) {
+            this.element = element;
+            this.parts = parts;
+            this.startIndexAbs = startIndexAbs;
+            this.endIndexAbs = endIndexAbs;
+            this.jobId = jobId;
+            this.inOn = inOn;
+        }
+
+        public YamlElement element() {
+            return element;
+        }
+
+        public String part(final int index) {
+            return index < parts.length ? parts[index] : null;
+        }
+
+        public int size() {
+            return parts.length;
+        }
+
+        public int startIndexAbs() {
+            return startIndexAbs;
+        }
+
+        public int endIndexAbs() {
+            return endIndexAbs;
+        }
+
+        //JOB WHICH CONTAINS THE REFERENCE
+        public String jobId() {
+            return jobId;
+        }
+
+        //REFERENCE IN THE TRIGGER [on] e.g. workflow_call outputs
+        public boolean inOn() {
+            return inOn;
+        }
+    }
+}
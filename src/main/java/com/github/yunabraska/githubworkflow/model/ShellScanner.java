@@ -0,0 +1,479 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.model.ShellWrites.Target;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+//LINEAR SHELL SCANNER [bash, pwsh]: one pass per line, no backtracking
+//a [run] text is scanned once per content [YamlShape] - the model and the annotator share the result
+public class ShellScanner {
+
+    private ShellScanner() {
+    }
+
+    //COMMANDS OF A [run] TEXT - content only, scanned line by line
+    public static Line lineOf(final CharSequence text) {
+        final List<Command> result = new ArrayList<>();
+        if (text != null) {
+            int start = 0;
+            int line = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    final int end = i > start && text.charAt(i - 1) == '\r' ? i - 1 : i;
+                    new LineScanner(text, start, end, line++, result).scan();
+                    start = i + 1;
+                }
+            }
+        }
+        return new Line(result);
+    }
+
+    //WRITES OF A [run] BLOCK: commands can continue on the next lines [\, `, |, { }, heredoc]
+    public static ShellWrites writesOf(final Line line) {
+        final ShellWrites result = new ShellWrites();
+        final List<String> pending = new ArrayList<>();
+        final List<Integer> pendingLines = new ArrayList<>();
+        int depth = 0;
+        //SHELL HEREDOC [cat <<EOF >> $GITHUB_OUTPUT]: the body lines are written as they are
+        String heredoc = null;
+        Target heredocTarget = null;
+        boolean inHeredoc = false;
+        for (final Command command : line.commands) {
+            if (heredoc != null && command.lineStart) {
+                inHeredoc = true;
+                if (command.raw.equals(heredoc)) {
+                    heredoc = null;
+                    if (heredocTarget != null) {
+                        flush(result, heredocTarget, pending, pendingLines);
+                    } else if (depth == 0) {
+                        pending.clear();
+                        pendingLines.clear();
+                    }
+                    continue;
+                }
+                pending.add(command.raw);
+                pendingLines.add(command.line);
+                if (heredocTarget != null) {
+                    flush(result, heredocTarget, pending, pendingLines);
+                }
+                continue;
+            }
+            if (heredoc != null && inHeredoc) {
+                continue;
+            }
+            depth += command.open ? 1 : 0;
+            depth -= command.close && depth > 0 ? 1 : 0;
+            for (final String payload : command.payloads) {
+                pending.add(payload);
+                pendingLines.add(command.line);
+            }
+            if (command.heredoc != null) {
+                heredoc = command.heredoc;
+                heredocTarget = command.target;
+                inHeredoc = false;
+            }
+            if (command.target != null) {
+                flush(result, command.target, pending, pendingLines);
+            } else if (!command.continued && depth == 0 && heredoc == null) {
+                pending.clear();
+                pendingLines.clear();
+            }
+        }
+        return result.complete();
+    }
+
+    private static void flush(final ShellWrites result, final Target target, final List<String> pending, final List<Integer> pendingLines) {
+        for (int i = 0; i < pending.size(); i++) {
+            result.write(target, pending.get(i), pendingLines.get(i));
+        }
+        pending.clear();
+        pendingLines.clear();
+    }
+
+    //[$GITHUB_OUTPUT, ${GITHUB_OUTPUT}, $env:GITHUB_OUTPUT, ${env:GITHUB_OUTPUT}]
+    public static Target targetOf(final String word) {
+        if (word == null || word.isEmpty() || word.charAt(0) != '$') {
+            return null;
+        }
+        String name = word.substring(1);
+        if (name.startsWith("{") && name.endsWith("}")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        if (name.regionMatches(true, 0, "env:", 0, 4)) {
+            name = name.substring(4);
+        }
+        for (final Target target : Target.values()) {
+            if (target.name().equalsIgnoreCase(name)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    public static class Line {
+
+        private final List<Command> commands;
+
+        private Line(final List<Command> commands) {
+            this.commands = commands.isEmpty() ? emptyList() : unmodifiableList(commands);
+        }
+
+        public List<Command> commands() {
+            return commands;
+        }
+    }
+
+    public static class Command {
+
+        //FIRST COMMAND OF A PHYSICAL LINE - [raw] is the trimmed line e.g. a heredoc body line
+        private final int line;
+        private final boolean lineStart;
+        private final String raw;
+        private final List<String> payloads;
+        private final Target target;
+        private final String heredoc;
+        private final boolean open;
+        private final boolean close;
+        //ENDS WITH [\, `, |] - the next command gets the payloads
+        private final boolean continued;
+
+        private Command(final int line, final boolean lineStart, final String raw, final List<String> payloads, final Target target, final String heredoc, final boolean open, final boolean close, final boolean continued) {
+            this.line = line;
+            this.lineStart = lineStart;
+            this.raw = raw;
+            this.payloads = payloads.isEmpty() ? emptyList() : unmodifiableList(payloads);
+            this.target = target;
+            this.heredoc = heredoc;
+            this.open = open;
+            this.close = close;
+            this.continued = continued;
+        }
+
+        public int line() {
+            return line;
+        }
+
+        public List<String> payloads() {
+            return payloads;
+        }
+
+        public Target target() {
+            return target;
+        }
+    }
+
+    //ONE PHYSICAL LINE: words with quotes removed, split into commands by [; && || | &]
+    private static class LineScanner {
+
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+        private final List<Command> commands;
+        private final int line;
+        private final String raw;
+        private boolean lineStart = true;
+        private final List<String> words = new ArrayList<>();
+        private final List<Boolean> quotes = new ArrayList<>();
+        private StringBuilder word;
+        private boolean quoted;
+        private Target target;
+        private String heredoc;
+        //WORD AFTER [>>, >, <<, <]
+        private int next;
+        private static final int NEXT_WORD = 0;
+        private static final int NEXT_TARGET = 1;
+        private static final int NEXT_HEREDOC = 2;
+        private static final int NEXT_IGNORED = 3;
+        private static final Set<String> RESERVED_WORDS = Set.of("then", "do", "else", "elif", "!", "{", "(");
+        private static final Set<String> PREFIXES = Set.of("sudo", "time", "command", "exec", "nohup", "builtin");
+
+        private LineScanner(final CharSequence text, final int from, final int to, final int line, final List<Command> commands) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.line = line;
+            this.commands = commands;
+            this.raw = text.subSequence(from, to).toString().trim();
+        }
+
+        private void scan() {
+            int i = from;
+            while (i < to) {
+                final char c = text.charAt(i);
+                if (word == null && c == '#') {
+                    break;
+                } else if (Character.isWhitespace(c)) {
+                    endWord();
+                } else if (c == '\'') {
+                    i = quoted(i, '\'');
+                } else if (c == '"') {
+                    i = quoted(i, '"');
+                } else if (c == ';') {
+                    endCommand(false);
+                } else if (c == '&') {
+                    if (i > from && text.charAt(i - 1) == '>') {
+                        //[>&2]
+                        next = NEXT_IGNORED;
+                    } else {
+                        i += i + 1 < to && text.charAt(i + 1) == '&' ? 1 : 0;
+                        endCommand(false);
+                    }
+                } else if (c == '|') {
+                    final boolean or = i + 1 < to && text.charAt(i + 1) == '|';
+                    i += or ? 1 : 0;
+                    endCommand(!or);
+                } else if (c == '>') {
+                    if (word != null && !quoted && isDigits(word)) {
+                        //[2>>]
+                        word = null;
+                    }
+                    endWord();
+                    i += i + 1 < to && text.charAt(i + 1) == '>' ? 1 : 0;
+                    next = NEXT_TARGET;
+                } else if (c == '<') {
+                    endWord();
+                    if (i + 2 < to && text.charAt(i + 1) == '<' && text.charAt(i + 2) == '<') {
+                        i += 2;
+                        next = NEXT_IGNORED;
+                    } else if (i + 1 < to && text.charAt(i + 1) == '<') {
+                        i += i + 2 < to && text.charAt(i + 2) == '-' ? 2 : 1;
+                        next = NEXT_HEREDOC;
+                    } else {
+                        next = NEXT_IGNORED;
+                    }
+                } else if ((c == '\\' || c == '`') && i + 1 == to) {
+                    endWord();
+                    endCommand(true);
+                    return;
+                } else if (c == '\\' || c == '`') {
+                    append(text.charAt(++i));
+                } else {
+                    append(c);
+                }
+                i++;
+            }
+            endCommand(false);
+        }
+
+        //'text' is literal, "text" knows [\"] and [`"]
+        private int quoted(final int from, final char quote) {
+            if (word == null) {
+                word = new StringBuilder();
+            }
+            quoted = quoted || word.length() == 0;
+            int i = from + 1;
+            while (i < to && text.charAt(i) != quote) {
+                final char c = text.charAt(i);
+                if (quote == '"' && (c == '\\' || c == '`') && i + 1 < to && isEscaped(text.charAt(i + 1))) {
+                    i++;
+                }
+                word.append(text.charAt(i));
+                i++;
+            }
+            return i;
+        }
+
+        private static boolean isEscaped(final char c) {
+            return c == '"' || c == '\\' || c == '$' || c == '`';
+        }
+
+        private void append(final char c) {
+            if (word == null) {
+                word = new StringBuilder();
+            }
+            word.append(c);
+        }
+
+        private void endWord() {
+            if (word == null) {
+                return;
+            }
+            final String value = word.toString();
+            switch (next) {
+                case NEXT_TARGET -> target = targetOf(value);
+                case NEXT_HEREDOC -> heredoc = value;
+                case NEXT_IGNORED -> {
+                    // [< file] [<<< text] [>&2]
+                }
+                default -> {
+                    words.add(value);
+                    quotes.add(quoted);
+                }
+            }
+            next = NEXT_WORD;
+            word = null;
+            quoted = false;
+        }
+
+        private void endCommand(final boolean continued) {
+            endWord();
+            if (words.isEmpty() && target == null && heredoc == null && !continued && !lineStart) {
+                return;
+            }
+            boolean open = false;
+            boolean close = false;
+            if (!words.isEmpty() && !quotes.get(0) && ("{".equals(words.get(0)) || "(".equals(words.get(0)))) {
+                open = true;
+                words.remove(0);
+                quotes.remove(0);
+            } else if (!words.isEmpty() && !quotes.get(0) && ("}".equals(words.get(0)) || ")".equals(words.get(0)))) {
+                close = true;
+                words.remove(0);
+                quotes.remove(0);
+            }
+            final List<String> payloads = new ArrayList<>();
+            final Target result = interpret(payloads);
+            commands.add(new Command(line, lineStart, raw, payloads, result, heredoc, open, close, continued));
+            lineStart = false;
+            words.clear();
+            quotes.clear();
+            target = null;
+            heredoc = null;
+        }
+
+        //[echo, printf, Write-Output, "text", tee, Out-File, Add-Content, Set-Content]
+        private Target interpret(final List<String> payloads) {
+            final int command = commandIndex();
+            if (command >= words.size()) {
+                return target;
+            }
+            final String name = words.get(command).toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "echo", "write-output" -> {
+                    int first = command + 1;
+                    boolean escapes = false;
+                    while (first < words.size() && !quotes.get(first) && isEchoFlag(words.get(first))) {
+                        escapes |= words.get(first).contains("e");
+                        first++;
+                    }
+                    if (first < words.size()) {
+                        final String payload = String.join(" ", words.subList(first, words.size()));
+                        addLines(payloads, escapes ? payload.replace("\\n", "\n") : payload);
+                    }
+                }
+                case "printf" -> {
+                    int first = command + 1;
+                    while (first < words.size() && !quotes.get(first) && words.get(first).startsWith("-")) {
+                        first++;
+                    }
+                    if (first < words.size()) {
+                        addLines(payloads, format(words.get(first), words.subList(first + 1, words.size())));
+                    }
+                }
+                case "tee", "out-file", "add-content", "set-content" -> {
+                    Target result = target;
+                    for (int i = command + 1; i < words.size(); i++) {
+                        final String arg = words.get(i);
+                        if ("-value".equalsIgnoreCase(arg) && i + 1 < words.size()) {
+                            addLines(payloads, words.get(++i));
+                        } else if (targetOf(arg) != null) {
+                            result = targetOf(arg);
+                        }
+                    }
+                    return result;
+                }
+                default -> {
+                    if (quotes.get(command)) {
+                        addLines(payloads, String.join(" ", words.subList(command, words.size())));
+                    }
+                }
+            }
+            return target;
+        }
+
+        //COMMAND NAME AFTER RESERVED WORDS [then, do, else, elif, !, {] AND PREFIXES [sudo, time, command, exec, VAR=x]
+        private int commandIndex() {
+            int result = 0;
+            while (result < words.size() && !quotes.get(result)) {
+                final String value = words.get(result);
+                if (RESERVED_WORDS.contains(value) || isAssignment(value)) {
+                    result++;
+                } else if (PREFIXES.contains(value)) {
+                    result++;
+                    //[sudo -E] [time -p]
+                    while (result < words.size() && !quotes.get(result) && words.get(result).startsWith("-")) {
+                        result++;
+                    }
+                } else {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        //[NAME=value] - the key of [echo key=value] is no command word
+        private static boolean isAssignment(final String value) {
+            final int assign = value.indexOf('=');
+            if (assign < 1) {
+                return false;
+            }
+            for (int i = 0; i < assign; i++) {
+                final char c = value.charAt(i);
+                if (!(c == '_' || Character.isLetter(c) || (i > 0 && Character.isDigit(c)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //[%s, %d, %%] and [\n] - enough to find [key=value] lines
+        private static String format(final String pattern, final List<String> args) {
+            final StringBuilder result = new StringBuilder();
+            int arg = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                final char c = pattern.charAt(i);
+                if (c == '%' && i + 1 < pattern.length()) {
+                    final char type = pattern.charAt(++i);
+                    if (type == '%') {
+                        result.append('%');
+                    } else if (arg < args.size()) {
+                        result.append(args.get(arg++));
+                    }
+                } else if (c == '\\' && i + 1 < pattern.length() && pattern.charAt(i + 1) == 'n') {
+                    result.append('\n');
+                    i++;
+                } else {
+                    result.append(c);
+                }
+            }
+            return result.toString();
+        }
+
+        private static void addLines(final List<String> payloads, final String payload) {
+            int start = 0;
+            for (int i = 0; i <= payload.length(); i++) {
+                if (i == payload.length() || payload.charAt(i) == '\n') {
+                    if (i > start) {
+                        payloads.add(payload.substring(start, i));
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+
+        //[-n, -e, -E, -ne]
+        private static boolean isEchoFlag(final String value) {
+            for (int i = 1; i < value.length(); i++) {
+                if ("neE".indexOf(value.charAt(i)) == -1) {
+                    return false;
+                }
+            }
+            return value.length() > 1 && value.charAt(0) == '-';
+        }
+
+        private static boolean isDigits(final CharSequence value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (!Character.isDigit(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return value.length() > 0;
+        }
+    }
+}
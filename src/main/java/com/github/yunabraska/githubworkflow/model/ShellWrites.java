@@ -0,0 +1,139 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+//[GITHUB_OUTPUT] AND [GITHUB_ENV] WRITES OF A [run] BLOCK: key=value and multiline values key<<EOF ... EOF
+public class ShellWrites {
+
+    public enum Target {
+        GITHUB_OUTPUT,
+        GITHUB_ENV
+    }
+
+    private final List<Write> writes = new ArrayList<>();
+    //LINES WITH A KEY e.g. for the gutter icon
+    private final BitSet lines = new BitSet();
+    //OPEN MULTILINE VALUES PER TARGET
+    private final Map<Target, Write> multiline = new EnumMap<>(Target.class);
+
+    protected ShellWrites() {
+    }
+
+    protected void write(final Target target, final String payload, final int line) {
+        final Write open = multiline.get(target);
+        if (open != null) {
+            if (payload.trim().equals(open.delimiter)) {
+                multiline.remove(target);
+                open.complete();
+            } else {
+                open.append(payload);
+            }
+            return;
+        }
+        final int assign = payload.indexOf('=');
+        final int heredoc = payload.indexOf("<<");
+        if (heredoc > 0 && (assign == -1 || heredoc < assign)) {
+            final String key = payload.substring(0, heredoc).trim();
+            final String delimiter = payload.substring(heredoc + 2).trim();
+            if (isKey(key) && !delimiter.isEmpty()) {
+                final Write write = new Write(target, key, null, line, delimiter);
+                multiline.put(target, write);
+                add(write);
+            }
+        } else if (assign > 0) {
+            final String key = payload.substring(0, assign).trim();
+            if (isKey(key)) {
+                add(new Write(target, key, payload.substring(assign + 1), line, null));
+            }
+        }
+    }
+
+    protected ShellWrites complete() {
+        multiline.values().forEach(Write::complete);
+        multiline.clear();
+        return this;
+    }
+
+    private void add(final Write write) {
+        writes.add(write);
+        lines.set(write.line);
+    }
+
+    private static boolean isKey(final String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.isWhitespace(key.charAt(i)) || key.charAt(i) == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Write> writes() {
+        return unmodifiableList(writes);
+    }
+
+    public boolean hasWrite(final int line) {
+        return line > -1 && lines.get(line);
+    }
+
+    public boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    public static class Write {
+
+        private final Target target;
+        private final String key;
+        //LINE INDEX IN THE [run] BLOCK
+        private final int line;
+        private final String delimiter;
+        private StringBuilder body;
+        private String value;
+
+        private Write(final Target target, final String key, final String value, final int line, final String delimiter) {
+            this.target = target;
+            this.key = key;
+            this.value = value;
+            this.line = line;
+            this.delimiter = delimiter;
+        }
+
+        private void append(final String text) {
+            if (body == null) {
+                body = new StringBuilder(text);
+            } else {
+                body.append('\n').append(text);
+            }
+        }
+
+        private void complete() {
+            value = body == null ? "" : body.toString();
+            body = null;
+        }
+
+        public Target target() {
+            return target;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        public int line() {
+            return line;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.yunabraska.githubworkflow.model;
+
+//SHARED STRINGS: keys and short values like [uses, run, ubuntu-latest, actions/checkout@v4] once for all trees and cached actions
+public class StringPool {
+
+    //BOUNDED LRU: longer values are rarely repeated, values of closed files drop out
+    public static final int MAX_LENGTH = 64;
+    public static final int MAX_SIZE = 16384;
+    private static final LruCache<String, String> POOL = new LruCache<>(MAX_SIZE);
+
+    private StringPool() {
+    }
+
+    public static String intern(final String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        return POOL.putIfAbsent(value, value);
+    }
+
+    public static String intern(final CharSequence value) {
+        return value == null ? null : intern(value.toString());
+    }
+
+    public static int size() {
+        return POOL.size();
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils.getDescription;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ENVS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_JOBS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ON;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_OUTPUTS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_SECRETS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
+import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_ENV_JOB;
+import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_ENV_ROOT;
+import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_ENV_STEP;
+import static com.github.yunabraska.githubworkflow.config.NodeIcon.ICON_TEXT_VARIABLE;
+import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.hasText;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Optional.ofNullable;
+
+//SYMBOLS OF A CONTEXT: jobs, steps, declared outputs, inputs, secrets and env scopes by id - built once per context version
+public class SymbolTable {
+
+    //DOCUMENT ORDER - jobs before a job are a prefix
+    private final List<YamlElement> jobs = new ArrayList<>();
+    private final Map<String, Integer> jobIndices = new HashMap<>();
+    //STEP IDS IN LOWER CASE - [steps.Build.outputs] finds [id: build]
+    private final Map<String, Map<String, YamlElement>> steps = new HashMap<>();
+    private final Map<String, Map<String, String>> jobOutputs = new HashMap<>();
+    //[run] OUTPUTS: jobId -> stepId -> key:value
+    private final Map<String, Map<String, Map<String, String>>> runOutputs = new HashMap<>();
+    private final Map<String, String> inputs = new HashMap<>();
+    private final Map<String, String> secrets = new HashMap<>();
+    //ENV SCOPES: workflow, per job and per step [sorted by start offset]
+    private EnvScope workflowEnvs = EnvScope.DEFAULT_ENVS;
+    private final Map<String, EnvScope> jobEnvs = new HashMap<>();
+    private final Map<String, int[]> stepStarts = new HashMap<>();
+    private final Map<String, EnvScope[]> stepEnvs = new HashMap<>();
+
+    public static SymbolTable symbolTableOf(final WorkflowContext context) {
+        final SymbolTable result = new SymbolTable();
+        //[GITHUB_ENV] WRITES PER STEP NODE
+        final Map<Integer, Map<String, String>> runEnvs = new HashMap<>();
+        context.runEnvs().values().forEach(env -> ofNullable(env.parent()).ifPresent(step -> runEnvs.computeIfAbsent(step.node(), node -> new HashMap<>()).putIfAbsent(env.key(), env.textOrChildTextNoQuotes())));
+        ofNullable(context.root()).ifPresent(root -> {
+            result.workflowEnvs = EnvScope.DEFAULT_ENVS.with(envsOf(root), ICON_ENV_ROOT);
+            root.child(FIELD_JOBS).map(YamlElement::children).ifPresent(jobs -> jobs.stream().filter(job -> hasText(job.key())).forEach(job -> result.addJob(job, runEnvs)));
+            root.child(FIELD_ON).map(on -> on.findChildNodes(secrets -> FIELD_SECRETS.equals(secrets.key()))).ifPresent(secrets -> secrets.stream()
+                    .flatMap(secret -> secret.children().stream())
+                    .filter(secret -> hasText(secret.key()))
+                    .forEach(secret -> result.secrets.putIfAbsent(secret.key(), getDescription(secret))));
+        });
+        context.inputs().values().stream().filter(input -> hasText(input.key())).forEach(input -> {
+            //LONGEST DESCRIPTION WINS
+            final String description = getDescription(input);
+            result.inputs.merge(input.key(), description, (previous, next) -> previous.length() < next.length() ? next : previous);
+        });
+        context.runOutputs().values().forEach(output -> ofNullable(output.parent()).ifPresent(step -> step.findParentJob().map(YamlElement::key).ifPresent(jobId -> {
+            if (hasText(step.id())) {
+                result.runOutputs.computeIfAbsent(jobId, id -> new HashMap<>()).computeIfAbsent(step.id(), id -> new HashMap<>()).putIfAbsent(output.key(), output.textOrChildTextNoQuotes());
+            }
+        })));
+        return result;
+    }
+
+    private void addJob(final YamlElement job, final Map<Integer, Map<String, String>> runEnvs) {
+        final String jobId = job.key();
+        if (jobIndices.putIfAbsent(jobId, jobs.size()) != null) {
+            return;
+        }
+        jobs.add(job);
+        final Map<String, YamlElement> jobSteps = new LinkedHashMap<>();
+        job.child(FIELD_STEPS).map(YamlElement::children).ifPresent(children -> children.stream().filter(step -> hasText(step.id())).forEach(step -> jobSteps.putIfAbsent(step.id().toLowerCase(Locale.ROOT), step)));
+        steps.put(jobId, jobSteps);
+        final Map<String, String> outputs = new HashMap<>();
+        job.child(FIELD_OUTPUTS).map(YamlElement::children).ifPresent(children -> children.stream()
+                .filter(output -> hasText(output.key()))
+                .forEach(output -> outputs.putIfAbsent(output.key(), output.textOrChildTextNoQuotes())));
+        jobOutputs.put(jobId, outputs);
+        addEnvScopes(job, runEnvs);
+    }
+
+    //FLOW SENSITIVE: a step sees the [GITHUB_ENV] writes of the steps before it
+    private void addEnvScopes(final YamlElement job, final Map<Integer, Map<String, String>> runEnvs) {
+        final EnvScope jobScope = workflowEnvs.with(envsOf(job), ICON_ENV_JOB);
+        final List<YamlElement> jobSteps = job.child(FIELD_STEPS).map(YamlElement::children).orElseGet(List::of);
+        final int[] starts = new int[jobSteps.size()];
+        final EnvScope[] scopes = new EnvScope[jobSteps.size()];
+        EnvScope written = jobScope;
+        for (int i = 0; i < starts.length; i++) {
+            final YamlElement step = jobSteps.get(i);
+            starts[i] = step.startIndexAbs();
+            scopes[i] = written.with(envsOf(step), ICON_ENV_STEP);
+            written = written.with(runEnvs.get(step.node()), ICON_TEXT_VARIABLE);
+        }
+        jobEnvs.put(job.key(), jobScope);
+        stepStarts.put(job.key(), starts);
+        stepEnvs.put(job.key(), scopes);
+    }
+
+    private static Map<String, String> envsOf(final YamlElement element) {
+        final Map<String, String> result = new HashMap<>();
+        element.child(FIELD_ENVS).map(YamlElement::children).ifPresent(children -> children.stream()
+                .filter(env -> hasText(env.key()) && hasText(env.textOrChildTextNoQuotes()))
+                .forEach(env -> result.putIfAbsent(env.key(), env.textOrChildTextNoQuotes())));
+        return result;
+    }
+
+    public List<YamlElement> jobs() {
+        return unmodifiableList(jobs);
+    }
+
+    public Optional<YamlElement> job(final String jobId) {
+        return ofNullable(jobId).map(jobIndices::get).map(jobs::get);
+    }
+
+    //[needs] CANDIDATES: jobs declared before the given job
+    public List<YamlElement> jobsBefore(final String jobId) {
+        return ofNullable(jobId).map(jobIndices::get).map(index -> unmodifiableList(jobs.subList(0, index))).orElse(emptyList());
+    }
+
+    public Collection<YamlElement> steps(final String jobId) {
+        return ofNullable(jobId).map(steps::get).map(Map::values).orElse(emptyList());
+    }
+
+    public Optional<YamlElement> step(final String jobId, final String stepId) {
+        return ofNullable(jobId).map(steps::get).flatMap(jobSteps -> ofNullable(stepId).map(id -> jobSteps.get(id.toLowerCase(Locale.ROOT))));
+    }
+
+    public Map<String, String> jobOutputs(final String jobId) {
+        return ofNullable(jobId).map(jobOutputs::get).map(map -> unmodifiableMap(map)).orElse(emptyMap());
+    }
+
+    public Map<String, String> runOutputs(final String jobId, final String stepId) {
+        return ofNullable(jobId).map(runOutputs::get).map(jobSteps -> jobSteps.get(stepId)).map(map -> unmodifiableMap(map)).orElse(emptyMap());
+    }
+
+    //ENVS VISIBLE AT THE OFFSET OF THE JOB [step = last step starting at or before the offset]
+    public EnvScope envScope(final String jobId, final int offset) {
+        final int[] starts = jobId == null ? null : stepStarts.get(jobId);
+        if (starts == null) {
+            return workflowEnvs;
+        }
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? jobEnvs.get(jobId) : stepEnvs.get(jobId)[low - 1];
+    }
+
+    public Map<String, String> inputs() {
+        return unmodifiableMap(inputs);
+    }
+
+    public Map<String, String> secrets() {
+        return unmodifiableMap(secrets);
+    }
+}
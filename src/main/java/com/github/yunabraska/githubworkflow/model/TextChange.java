@@ -0,0 +1,84 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Objects;
+
+//DOCUMENT EDITS SINCE THE CONTEXT WAS BUILT [start, oldEnd] = offsets in the built tree, [newEnd] = offset in the current document
+public class TextChange {
+
+    private final int start;
+    private final int oldEnd;
+    private final int newEnd;
+
+    public TextChange(final int start, final int oldEnd, final int newEnd) {
+        this.start = start;
+        this.oldEnd = oldEnd;
+        this.newEnd = newEnd;
+    }
+
+    public static TextChange textChangeOf(final int offset, final int oldLength, final int newLength) {
+        return new TextChange(offset, offset + oldLength, offset + newLength);
+    }
+
+    public static TextChange wholeDocument() {
+        return new TextChange(0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int oldEnd() {
+        return oldEnd;
+    }
+
+    public int newEnd() {
+        return newEnd;
+    }
+
+    public int delta() {
+        return newEnd - oldEnd;
+    }
+
+    public boolean isWholeDocument() {
+        return oldEnd == Integer.MAX_VALUE;
+    }
+
+    //offset, oldLength, newLength of the new edit in current document coordinates
+    public TextChange merge(final int offset, final int oldLength, final int newLength) {
+        if (isWholeDocument()) {
+            return this;
+        }
+        final int editDelta = newLength - oldLength;
+        final int shiftedEnd;
+        if (newEnd >= offset + oldLength) {
+            shiftedEnd = newEnd + editDelta;
+        } else {
+            shiftedEnd = Math.max(newEnd, offset + newLength);
+        }
+        final int mergedEnd = Math.max(shiftedEnd, offset + newLength);
+        return new TextChange(Math.min(start, offset), mergedEnd - (delta() + editDelta), mergedEnd);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final TextChange that = (TextChange) o;
+        return start == that.start && oldEnd == that.oldEnd && newEnd == that.newEnd;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, oldEnd, newEnd);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+                + "{"
+                + "start=" + start
+                + ", oldEnd=" + oldEnd
+                + ", newEnd=" + newEnd
+                + '}';
+    }
+}
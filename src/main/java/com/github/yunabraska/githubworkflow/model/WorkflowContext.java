@@ -1,15 +1,14 @@
 package com.github.yunabraska.githubworkflow.model;
 
-import com.github.yunabraska.githubworkflow.completion.GitHubWorkflowUtils;
-
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ENVS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_INPUTS;
@@ -20,16 +19,22 @@ import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.F
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_SECRETS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_USES;
-import static com.github.yunabraska.githubworkflow.model.YamlElement.createYamlElement;
-import static java.util.Comparator.comparingInt;
+import static com.github.yunabraska.githubworkflow.model.OffsetIndex.offsetIndexOf;
+import static com.github.yunabraska.githubworkflow.model.ReferenceIndex.referenceIndexOf;
+import static com.github.yunabraska.githubworkflow.model.SymbolTable.symbolTableOf;
+import static com.github.yunabraska.githubworkflow.model.TextChange.textChangeOf;
+import static com.github.yunabraska.githubworkflow.model.TextChange.wholeDocument;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Optional.ofNullable;
 
 @SuppressWarnings({"unused", "java:S2386"})
 public class WorkflowContext {
 
     public static final Map<String, WorkflowContext> WORKFLOW_CONTEXT_MAP = new ConcurrentHashMap<>();
-    protected final AtomicInteger cursorAbs = new AtomicInteger(-1);
-    protected final AtomicReference<YamlElement> root = new AtomicReference<>(null);
+    private static final AtomicLong VERSIONS = new AtomicLong(0);
+    //IMMUTABLE AFTER CONSTRUCTION: maps are only filled by the constructors, edits create a new context
+    protected final long version;
+    protected final YamlElement root;
     protected final Map<String, YamlElement> jobs = new HashMap<>();
     protected final Map<String, YamlElement> needs = new HashMap<>();
     protected final Map<String, YamlElement> steps = new HashMap<>();
@@ -40,137 +45,302 @@ public class WorkflowContext {
     protected final Map<String, YamlElement> secrets = new HashMap<>();
     protected final Map<String, YamlElement> vars = new HashMap<>();
     protected final Map<String, YamlElement> outputs = new HashMap<>();
-    protected final Map<String, GitHubAction> actions = new HashMap<>();
+    //CANONICAL [uses] BY PATH - resolved by the ActionRegistry, never while indexing
+    protected final Map<String, ActionRef> actions = new HashMap<>();
+    //NOT CONTENT: document edits since the build and the context which replaced this one
+    protected final AtomicReference<TextChange> pendingChange = new AtomicReference<>(null);
+    protected final AtomicReference<OffsetIndex> offsetIndex = new AtomicReference<>(null);
+    protected final AtomicReference<SymbolTable> symbols = new AtomicReference<>(null);
+    protected final AtomicReference<ReferenceIndex> references = new AtomicReference<>(null);
+    protected volatile WorkflowContext successor;
 
     public WorkflowContext(final YamlElement root) {
-        this.root.set(root);
+        this.version = VERSIONS.incrementAndGet();
+        this.root = root;
+        if (root != null) {
+            root.tree().context = this;
+            index(root);
+        }
+    }
+
+    //INCREMENTAL: copies the entries of the previous context which are not in the replaced subtree and indexes the grafted one
+    private WorkflowContext(final WorkflowContext previous, final YamlTree tree, final YamlElement replaced, final int grafted, final int fromIndexAbs, final int delta) {
+        this.version = VERSIONS.incrementAndGet();
+        this.root = tree.root();
+        tree.context = this;
+        //RANGE CHECK: the replaced subtree is its source range - without the ancestors, which can span the same range
+        final YamlTree previousTree = replaced.tree();
+        final int start = previousTree.start(replaced.node());
+        final int end = previousTree.end(replaced.node());
+        final Set<Integer> ancestors = new HashSet<>();
+        for (int node = previousTree.parent(replaced.node()); node != YamlTree.NONE; node = previousTree.parent(node)) {
+            ancestors.add(node);
+        }
+        final Predicate<YamlElement> inReplaced = element -> element.tree() == previousTree
+                && previousTree.start(element.node()) >= start
+                && previousTree.end(element.node()) <= end
+                && !ancestors.contains(element.node());
+        copy(previous.jobs, jobs, tree, inReplaced);
+        copy(previous.needs, needs, tree, inReplaced);
+        copy(previous.steps, steps, tree, inReplaced);
+        copy(previous.inputs, inputs, tree, inReplaced);
+        copy(previous.envs, envs, tree, inReplaced);
+        copy(previous.secrets, secrets, tree, inReplaced);
+        copy(previous.vars, vars, tree, inReplaced);
+        copy(previous.outputs, outputs, tree, inReplaced);
+        copyDetached(previous.runEnvs, runEnvs, tree, inReplaced, fromIndexAbs, delta);
+        copyDetached(previous.runOutputs, runOutputs, tree, inReplaced, fromIndexAbs, delta);
+        actions.putAll(previous.actions);
+        previousTree.walk(replaced.node(), node -> {
+            if (FIELD_USES.equals(previousTree.key(node))) {
+                actions.remove(actionKey(previousTree.element(node)));
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        index(tree.element(grafted));
+    }
+
+    //CONTEXT OF THE TREE: every element of the tree (and of its detached subtrees) resolves to this context
+    public static WorkflowContext workflowContextOf(final YamlElement root) {
+        return new WorkflowContext(root);
     }
 
     public Optional<YamlElement> getClosestElement(final int offset) {
-        return Optional.of(offset)
-                .filter(o -> o != -1)
-                .flatMap(cursorIndexAbs -> root().allElements()
-                        .filter(element -> element.startIndexAbs() <= offset && element.endIndexAbs() >= offset)
-                        .min(comparingInt(element -> getDistanceToIndex(element, offset))))
-                .or(() -> getLastElement(offset));
+        return Optional.of(offset).filter(o -> o != -1).flatMap(o -> offsetIndex().closest(o)).or(() -> getLastElement(offset));
     }
 
     public Optional<YamlElement> getLastElement(final int offset) {
-        return Optional.of(offset)
-                .filter(o -> o != -1)
-                .flatMap(o -> root().allElements()
-                        .filter(element -> element.startIndexAbs() >= offset)
-                        .min(Comparator.comparingInt(YamlElement::startIndexAbs)));
+        return Optional.of(offset).filter(o -> o != -1).flatMap(o -> offsetIndex().next(o));
+    }
+
+    public Optional<YamlElement> getContainingElement(final int startIndexAbs, final int endIndexAbs, final Predicate<YamlElement> filter) {
+        return offsetIndex().containing(startIndexAbs, endIndexAbs, filter);
+    }
+
+    public static Optional<YamlElement> getClosestElement(final YamlElement scope, final int offset) {
+        if (scope.parent() == null && scope.context() != null) {
+            return scope.context().getClosestElement(offset);
+        }
+        final OffsetIndex index = offsetIndexOf(scope);
+        return Optional.of(offset).filter(o -> o != -1).flatMap(o -> index.closest(o).or(() -> index.next(o)));
+    }
+
+    public OffsetIndex offsetIndex() {
+        return offsetIndex.updateAndGet(index -> index != null ? index : offsetIndexOf(root()));
+    }
+
+    //O(1) LOOKUPS FOR COMPLETION AND VALIDATION
+    public SymbolTable symbols() {
+        return symbols.updateAndGet(table -> table != null ? table : symbolTableOf(this));
+    }
+
+    //USAGES OF OUTPUTS, NEEDS, ENVS, SECRETS... BY TARGET
+    public ReferenceIndex references() {
+        return references.updateAndGet(index -> index != null ? index : referenceIndexOf(this));
+    }
+
+    //UNIQUE AND INCREASING: values derived from a context can be cached by version
+    public long version() {
+        return version;
     }
 
     public YamlElement root() {
-        return root.get();
+        return root;
     }
 
     public Map<String, YamlElement> jobs() {
-        return jobs;
+        return unmodifiableMap(jobs);
     }
 
     public Map<String, YamlElement> needs() {
-        return needs;
+        return unmodifiableMap(needs);
     }
 
     public Map<String, YamlElement> steps() {
-        return steps;
+        return unmodifiableMap(steps);
     }
 
     public Map<String, YamlElement> inputs() {
-        return inputs;
+        return unmodifiableMap(inputs);
     }
 
     public Map<String, YamlElement> envs() {
-        return envs;
+        return unmodifiableMap(envs);
     }
 
     public Map<String, YamlElement> secrets() {
-        return secrets;
+        return unmodifiableMap(secrets);
     }
 
     public Map<String, YamlElement> vars() {
-        return vars;
+        return unmodifiableMap(vars);
     }
 
     public Map<String, YamlElement> outputs() {
-        return outputs;
+        return unmodifiableMap(outputs);
     }
 
     public Map<String, YamlElement> runEnvs() {
-        return runEnvs;
+        return unmodifiableMap(runEnvs);
     }
 
     public Map<String, YamlElement> runOutputs() {
-        return runOutputs;
-    }
-
-    public Map<String, GitHubAction> actions() {
-        return actions;
-    }
-
-    public WorkflowContext init() {
-        final YamlElement top = this.root.get();
-        if (top != null) {
-            Optional.of(top).ifPresent(r -> r.allElements().filter(Objects::nonNull).forEach(e -> {
-                switch (ofNullable(e.key()).orElse("#")) {
-                    case FIELD_ENVS -> e.children().forEach(item -> envs.put(item.path(), item));
-                    case FIELD_STEPS -> e.children().forEach(item -> steps.put(item.path(), item));
-                    case FIELD_JOBS ->
-                        //if position is trigger node "ON" list all jobs
-                        //if position is needs
-                        //list job only when it has an output OR
-                            e.children().stream().filter(item -> item.key() != null).forEach(item -> jobs.put(item.path(), item));
-                    case FIELD_INPUTS ->
-                            e.children().stream().filter(child -> child.key() != null).forEach(child -> inputs.put(child.path(), child));
-                    case FIELD_OUTPUTS ->
-                            e.children().stream().filter(child -> child.key() != null).forEach(child -> outputs.put(child.path(), child));
-                    case FIELD_SECRETS ->
-                            e.children().stream().filter(child -> child.key() != null).forEach(child -> secrets.put(child.path(), child));
-                    case FIELD_NEEDS -> {
-                        //String
-                        ofNullable(e.childTextNoQuotes()).ifPresent(n -> needs.put(e.path() + "/" + e.childTextNoQuotes(), e));
-                        //Array[String]
-                        e.children().forEach(n -> needs.put(e.path() + "/" + n.childTextNoQuotes(), n));
-                    }
-                    case FIELD_RUN -> e.findParentStep().ifPresent(step -> e.children().forEach(line -> {
-                        parseEnvs(step, line);
-                        parseOutputs(step, line);
-                    }));
-                    case FIELD_USES -> {
-                        final String uses = e.childTextNoQuotes();
-                        //TODO: resolve TAGS & Branches
-                        actions.put(e.path() + "/" + uses, GitHubAction.getGitHubAction(uses));
-                    }
-                    default -> {
-                        // ignored
-                    }
-                }
-            }));
+        return unmodifiableMap(runOutputs);
+    }
+
+    public Map<String, ActionRef> actions() {
+        return unmodifiableMap(actions);
+    }
+
+    public Optional<TextChange> pendingChange() {
+        return ofNullable(pendingChange.get());
+    }
+
+    //EDITS OF A REPLACED CONTEXT GO TO ITS SUCCESSOR
+    public WorkflowContext change(final int offset, final int oldLength, final int newLength) {
+        synchronized (this) {
+            if (successor == null) {
+                pendingChange.updateAndGet(change -> change == null ? textChangeOf(offset, oldLength, newLength) : change.merge(offset, oldLength, newLength));
+                return this;
+            }
         }
+        return successor.change(offset, oldLength, newLength);
+    }
+
+    public WorkflowContext invalidate() {
+        pendingChange.set(wholeDocument());
         return this;
     }
 
-    private static int getDistanceToIndex(final YamlElement element, final int targetIndex) {
-        return (targetIndex - element.startIndexAbs) + (element.endIndexAbs - targetIndex);
+    //PUBLISH: the context for the file is replaced in one step, readers see either the old or the new one
+    public static WorkflowContext publish(final String path, final WorkflowContext context, final WorkflowContext previous, final TextChange applied) {
+        if (previous != null) {
+            previous.supersede(context, applied);
+        }
+        WORKFLOW_CONTEXT_MAP.put(path, context);
+        return context;
+    }
+
+    //EDITS AFTER THE APPLIED CHANGE ARE UNKNOWN TO THE SUCCESSOR
+    private synchronized void supersede(final WorkflowContext next, final TextChange applied) {
+        successor = next;
+        if (pendingChange.get() != applied) {
+            next.invalidate();
+        }
+    }
+
+    //INCREMENTAL UPDATE: new context with the job/step subtree grafted into a copy of the tree and all elements behind it shifted
+    public Optional<WorkflowContext> replace(final YamlElement previous, final YamlElement replacement) {
+        if (previous.parent() == null || previous.tree() != root().tree()) {
+            return Optional.empty();
+        }
+        final int fromIndexAbs = previous.endIndexAbs();
+        final int delta = replacement.endIndexAbs() - previous.endIndexAbs();
+        final YamlTree tree = previous.tree().copy(replacement.tree().size());
+        final int limit = tree.size();
+        final int grafted = tree.graft(previous.node(), replacement.tree());
+        if (delta != 0) {
+            tree.shift(limit, fromIndexAbs, delta);
+        }
+        return Optional.of(new WorkflowContext(this, tree, previous, grafted, fromIndexAbs, delta));
+    }
+
+    private static void copy(final Map<String, YamlElement> from, final Map<String, YamlElement> to, final YamlTree tree, final Predicate<YamlElement> skip) {
+        from.forEach((key, element) -> {
+            if (!skip.test(element)) {
+                to.put(key, tree.element(element.node()));
+            }
+        });
     }
 
-    private void parseOutputs(final YamlElement step, final YamlElement line) {
-        ofNullable(line.text()).map(GitHubWorkflowUtils::toGithubOutputs).ifPresent(outputMap -> outputMap.entrySet().stream().map(output -> createSingleElement(step, line, output)).forEach(output -> this.runOutputs.put(output.path(), output)));
+    private static void copyDetached(final Map<String, YamlElement> from, final Map<String, YamlElement> to, final YamlTree tree, final Predicate<YamlElement> skip, final int fromIndexAbs, final int delta) {
+        from.forEach((key, element) -> {
+            final YamlElement step = element.parent();
+            if (step != null && !skip.test(step)) {
+                to.put(key, YamlTree.detachedElement(
+                        tree.element(step.node()),
+                        element.startIndexAbs() >= fromIndexAbs ? element.startIndexAbs() + delta : element.startIndexAbs(),
+                        element.endIndexAbs() >= fromIndexAbs ? element.endIndexAbs() + delta : element.endIndexAbs(),
+                        element.key(),
+                        element.text()
+                ));
+            }
+        });
+    }
+
+    private void index(final YamlElement subtree) {
+        final YamlTree tree = subtree.tree();
+        tree.walk(subtree.node(), node -> {
+            index0(tree, node);
+            return YamlTree.Visit.CONTINUE;
+        });
+    }
+
+    private void index0(final YamlTree tree, final int node) {
+        //ITEMS OF PARENT NODES
+        final int parent = tree.parent(node);
+        final String parentKey = ofNullable(parent == YamlTree.NONE ? null : tree.key(parent)).orElse("#");
+        switch (parentKey) {
+            case FIELD_ENVS -> envs.put(tree.path(node), tree.element(node));
+            case FIELD_STEPS -> steps.put(tree.path(node), tree.element(node));
+            //if position is trigger node "ON" list all jobs
+            //if position is needs
+            //list job only when it has an output OR
+            case FIELD_JOBS -> putWithKey(jobs, tree, node);
+            case FIELD_INPUTS -> putWithKey(inputs, tree, node);
+            case FIELD_OUTPUTS -> putWithKey(outputs, tree, node);
+            case FIELD_SECRETS -> putWithKey(secrets, tree, node);
+            default -> {
+                // ignored
+            }
+        }
+        //NODES
+        final String key = tree.key(node);
+        if (key == null) {
+            return;
+        }
+        final YamlElement e = tree.element(node);
+        switch (key) {
+            case FIELD_NEEDS -> {
+                //String
+                ofNullable(e.childTextNoQuotes()).ifPresent(n -> needs.put(e.path() + "/" + e.childTextNoQuotes(), e));
+                //Array[String]
+                e.children().forEach(n -> needs.put(e.path() + "/" + n.childTextNoQuotes(), n));
+            }
+            case FIELD_RUN -> e.findParentStep().ifPresent(step -> parseWrites(step, e));
+            //TODO: resolve TAGS & Branches
+            case FIELD_USES -> ofNullable(ActionRef.actionRefOf(e.childTextNoQuotes())).ifPresent(ref -> actions.put(actionKey(e), ref));
+            default -> {
+                // ignored
+            }
+        }
+    }
+
+    private static String actionKey(final YamlElement uses) {
+        return uses.path() + "/" + ActionRef.usesOf(uses.childTextNoQuotes());
+    }
+
+    private static void putWithKey(final Map<String, YamlElement> map, final YamlTree tree, final int node) {
+        if (tree.key(node) != null) {
+            map.put(tree.path(node), tree.element(node));
+        }
     }
 
-    private void parseEnvs(final YamlElement step, final YamlElement line) {
-        ofNullable(line.text()).map(GitHubWorkflowUtils::toGithubEnvs).ifPresent(envsMap -> envsMap.entrySet().stream().map(env -> createSingleElement(step, line, env)).forEach(env -> this.runEnvs.put(env.path(), env)));
+    //[run] WRITES: one scan per text content, shared with the annotator - line views only for lines with writes
+    private void parseWrites(final YamlElement step, final YamlElement run) {
+        run.children().forEach(text -> text.shape().shellWrites().writes().forEach(write -> text.line(write.line()).ifPresent(line -> {
+            final YamlElement element = createSingleElement(step, line, write);
+            (write.target() == ShellWrites.Target.GITHUB_OUTPUT ? runOutputs : runEnvs).put(element.path(), element);
+        })));
     }
 
-    private YamlElement createSingleElement(final YamlElement step, final YamlElement line, final Map.Entry<String, String> kv) {
-        return createYamlElement(
+    private YamlElement createSingleElement(final YamlElement step, final YamlElement line, final ShellWrites.Write write) {
+        return YamlTree.detachedElement(
+                step,
                 line.startIndexAbs(),
                 line.endIndexAbs(),
-                kv.getKey(),
-                kv.getValue()
-        ).detachedParent(step);
+                write.key(),
+                write.value()
+        );
     }
 }
@@ -3,8 +3,6 @@ package com.github.yunabraska.githubworkflow.model;
 import com.intellij.openapi.util.TextRange;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -14,41 +12,26 @@ import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_JOBS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_NEEDS;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ON;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_OUTPUTS;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
 import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_USES;
-import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_WITH;
-import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.filterNodesRecursive;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.ROLE_JOB;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.ROLE_ON;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.ROLE_OUTPUTS;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.ROLE_STEP;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.ROLE_WITH;
 import static com.github.yunabraska.githubworkflow.model.YamlElementHelper.removeQuotes;
 import static java.util.Optional.ofNullable;
 
 @SuppressWarnings({"SameReturnValue", "unused"})
 public class YamlElement {
 
-    protected YamlElement parent;
-    protected final int startIndexAbs;
-    protected final int endIndexAbs;
-    protected final String key;
-    protected final String text;
-    protected final List<YamlElement> children = new ArrayList<>();
-    protected final WorkflowContext context;
+    protected final YamlTree tree;
+    protected final int node;
     public static final String CURSOR_STRING = "IntellijIdeaRulezzz";
 
-    public YamlElement(
-            final int startIndexAbs,
-            final int endIndexAbs,
-            final String key,
-            final String text,
-            final boolean isRootElement
-    ) {
-        this.startIndexAbs = startIndexAbs;
-        this.endIndexAbs = endIndexAbs;
-        this.key = key;
-        this.text = text;
-        this.context = isRootElement ? new WorkflowContext(this) : null;
+    protected YamlElement(final YamlTree tree, final int node) {
+        this.tree = tree;
+        this.node = node;
     }
 
     public static YamlElement createYamlElement(
@@ -57,50 +40,36 @@ public class YamlElement {
             final String key,
             final String text
     ) {
-        return new YamlElement(startIndexAbs, endIndexAbs, key, text, false);
-    }
-
-    public YamlElement parent() {
-        return parent;
+        return YamlTree.detachedElement(null, startIndexAbs, endIndexAbs, key, text);
     }
 
-    public List<YamlElement> children() {
-        return children;
-    }
-
-    public YamlElement detachedParent(final YamlElement parent) {
-        this.parent = parent;
-        return this;
+    public YamlTree tree() {
+        return tree;
     }
 
-    public YamlElement parent(final YamlElement parent) {
-        ofNullable(parent).ifPresent(p -> {
-            this.parent = parent;
-            parent.children(this);
-        });
-        return this;
+    public int node() {
+        return node;
     }
 
-    public YamlElement children(final YamlElement... children) {
-        return children(children == null ? null : Arrays.asList(children));
+    public YamlElement parent() {
+        final int parent = tree.parent(node);
+        return parent == YamlTree.NONE && node == 0 ? tree.attachedTo : tree.element(parent);
     }
 
-    public YamlElement children(final Collection<YamlElement> children) {
-        ofNullable(children).orElseGet(Collections::emptyList).stream().filter(Objects::nonNull).filter(child -> !this.equals(child)).forEach(child -> {
-            child.parent = this;
-            if (!this.children.contains(child)) {
-                this.children.add(child);
-            }
-        });
-        return this;
+    public List<YamlElement> children() {
+        final List<YamlElement> result = new ArrayList<>();
+        for (int child = tree.firstChild(node); child != YamlTree.NONE; child = tree.nextSibling(child)) {
+            result.add(new YamlElement(tree, child));
+        }
+        return Collections.unmodifiableList(result);
     }
 
     public int startIndexAbs() {
-        return startIndexAbs;
+        return tree.start(node);
     }
 
     public int endIndexAbs() {
-        return endIndexAbs;
+        return tree.end(node);
     }
 
     public int startIndexRel() {
@@ -108,15 +77,44 @@ public class YamlElement {
     }
 
     public int endIndexRel() {
-        return endIndexAbs - startIndexAbs;
+        return endIndexAbs() - startIndexAbs();
+    }
+
+    public YamlShape shape() {
+        return tree.shape(node);
     }
 
     public String text() {
-        return text;
+        return tree.text(node);
+    }
+
+    //NO COPY: range of the source snapshot
+    public CharSequence textSequence() {
+        return tree.textSequence(node);
     }
 
     public String textNoQuotes() {
-        return removeQuotes(text);
+        return removeQuotes(text());
+    }
+
+    //NO COPY: hasText(textNoQuotes()) on the source range - block scalars can be long
+    public boolean hasTextNoQuotes() {
+        final CharSequence text = textSequence();
+        if (text == null) {
+            return false;
+        }
+        int start = 0;
+        int end = text.length();
+        if (end > 1 && (text.charAt(0) == '"' || text.charAt(0) == '\'') && text.charAt(end - 1) == text.charAt(0)) {
+            start++;
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public String textOrChildText() {
@@ -127,12 +125,48 @@ public class YamlElement {
         return ofNullable(textNoQuotes()).orElseGet(this::childTextNoQuotes);
     }
 
+    //LINES OF A MULTI LINE LEAF e.g. [run: |] - the views are created on demand
+    public int lineCount() {
+        return shape().lines().length / 2;
+    }
+
+    public Optional<YamlElement> line(final int index) {
+        return ofNullable(tree.line(node, index));
+    }
+
+    public List<YamlElement> lines() {
+        final List<YamlElement> result = new ArrayList<>();
+        for (int i = 0; i < lineCount(); i++) {
+            line(i).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    //LINE INDEX AT THE OFFSET, -1 for indentation and offsets outside
+    public int lineAt(final int offsetAbs) {
+        final int[] lines = shape().lines();
+        final int offset = offsetAbs - startIndexAbs();
+        int low = 0;
+        int high = lines.length / 2 - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (lines[mid * 2] > offset) {
+                high = mid - 1;
+            } else if (lines[mid * 2 + 1] < offset) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
     public TextRange textRange() {
-        return startIndexAbs > -1 && endIndexAbs >= startIndexAbs ? new TextRange(startIndexAbs(), endIndexAbs()) : null;
+        return startIndexAbs() > -1 && endIndexAbs() >= startIndexAbs() ? new TextRange(startIndexAbs(), endIndexAbs()) : null;
     }
 
     public String key() {
-        return key;
+        return tree.key(node);
     }
 
     public String id() {
@@ -148,7 +182,7 @@ public class YamlElement {
     }
 
     public String path() {
-        return ofNullable(parent).map(YamlElement::path).map(p -> p + "/").orElse("") + this.keyOrIdOrName();
+        return tree.path(node);
     }
 
     public String keyOrIdOrName() {
@@ -172,29 +206,40 @@ public class YamlElement {
     }
 
     public int childIndex() {
-        return parent == null ? -1 : this.parent().children().indexOf(this);
+        return tree.parent(node) == YamlTree.NONE ? -1 : tree.siblingIndex(node);
     }
 
 
     public WorkflowContext context() {
-        return parent() == null? context : parent().context();
-    }
-
-    public YamlElement initContext() {
-        ofNullable(root()).map(YamlElement::context).ifPresent(WorkflowContext::init);
-        return this;
+        return tree.attachedTo == null ? tree.context : tree.attachedTo.context();
     }
 
     public YamlElement root() {
-        return parent() == null? this : parent().root();
+        return tree.attachedTo == null ? tree.element(0) : tree.attachedTo.root();
     }
 
+    //LAZY: pre order over the subtree including this, nothing collected up front
     public Stream<YamlElement> allElements() {
-        return Stream.concat(Stream.of(this), children().stream().flatMap(YamlElement::allElements));
+        return tree.stream(node);
+    }
+
+    //EARLY EXIT: first element of the subtree (pre order, including this) matching the filter
+    public Optional<YamlElement> findChildNode(final Predicate<YamlElement> filter) {
+        final YamlElement[] result = new YamlElement[1];
+        tree.walk(node, n -> {
+            final YamlElement element = new YamlElement(tree, n);
+            if (filter.test(element)) {
+                result[0] = element;
+                return YamlTree.Visit.STOP;
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        return ofNullable(result[0]);
     }
 
     public String childText() {
-        return children.isEmpty() ? null : children.iterator().next().text();
+        final int child = tree.firstChild(node);
+        return child == YamlTree.NONE ? null : tree.text(child);
     }
 
     public String childTextNoQuotes() {
@@ -202,19 +247,33 @@ public class YamlElement {
     }
 
     public List<YamlElement> findChildNodes(final Predicate<YamlElement> filter) {
-        return filterNodesRecursive(this, filter, new ArrayList<>());
+        final List<YamlElement> result = new ArrayList<>();
+        tree.walk(node, n -> {
+            final YamlElement element = new YamlElement(tree, n);
+            if (filter.test(element)) {
+                result.add(element);
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        return result;
     }
 
     public Optional<YamlElement> child(final String key) {
-        return this.children().stream().filter(child -> key != null && child.key() != null && key.equalsIgnoreCase(child.key())).findFirst();
+        return ofNullable(tree.element(tree.child(node, key)));
     }
 
     public Optional<YamlElement> childId(final String id) {
-        return this.children().stream().filter(child -> id != null && child.id() != null && id.equalsIgnoreCase(child.id())).findFirst();
+        return ofNullable(tree.element(tree.childId(node, id)));
     }
 
     public Optional<YamlElement> child(final Predicate<YamlElement> filter) {
-        return this.children().stream().filter(filter).findFirst();
+        for (int child = tree.firstChild(node); child != YamlTree.NONE; child = tree.nextSibling(child)) {
+            final YamlElement element = new YamlElement(tree, child);
+            if (filter.test(element)) {
+                return Optional.of(element);
+            }
+        }
+        return Optional.empty();
     }
 
     public Optional<YamlElement> findParent(final String key) {
@@ -222,6 +281,7 @@ public class YamlElement {
     }
 
     public Optional<YamlElement> findParent(final Predicate<YamlElement> filter) {
+        final YamlElement parent = parent();
         final boolean result = parent != null && filter.test(parent);
         return result || parent == null ? ofNullable(parent) : parent.findParent(filter);
     }
@@ -232,35 +292,55 @@ public class YamlElement {
     }
 
     public Optional<YamlElement> findParentJob() {
-        return findParent(job -> ofNullable(job.parent()).map(YamlElement::key).filter(FIELD_JOBS::equals).isPresent());
+        return findAncestor(ROLE_JOB);
     }
 
     public Optional<YamlElement> findParentStep() {
-        return findParent(job -> ofNullable(job.parent()).map(YamlElement::key).filter(FIELD_STEPS::equals).isPresent());
+        return findAncestor(ROLE_STEP);
     }
 
 
     public Optional<YamlElement> findParentOutput() {
-        return findParent(outputs -> FIELD_OUTPUTS.equals(outputs.key()));
+        return findAncestor(ROLE_OUTPUTS);
     }
 
     public Optional<YamlElement> findParentWith() {
-        return findParent(outputs -> FIELD_WITH.equals(outputs.key()));
+        return findAncestor(ROLE_WITH);
     }
 
     public Optional<YamlElement> findParentOn() {
-        return findParent(outputs -> FIELD_ON.equals(outputs.key()));
+        return findAncestor(ROLE_ON);
+    }
+
+    //PRECOMPUTED: nearest ancestor with the role, continues in the parent tree for detached subtrees
+    private Optional<YamlElement> findAncestor(final int role) {
+        final int ancestor = tree.ancestor(node, role);
+        if (ancestor != YamlTree.NONE) {
+            return Optional.of(new YamlElement(tree, ancestor));
+        }
+        final YamlElement attachedTo = tree.attachedTo;
+        if (attachedTo == null) {
+            return Optional.empty();
+        }
+        return attachedTo.tree.hasRole(attachedTo.node, role) ? Optional.of(attachedTo) : attachedTo.findAncestor(role);
     }
 
     public List<YamlElement> listSteps() {
-        return findChildNodes(step -> ofNullable(step.parent()).map(YamlElement::key).filter(FIELD_STEPS::equals).isPresent());
+        final List<YamlElement> result = new ArrayList<>();
+        tree.walk(node, n -> {
+            if (tree.hasRole(n, ROLE_STEP)) {
+                result.add(new YamlElement(tree, n));
+            }
+            return YamlTree.Visit.CONTINUE;
+        });
+        return result;
     }
 
     public Set<String> needItems() {
         final Set<String> result = new HashSet<>();
         if (FIELD_NEEDS.equals(key())) {
             ofNullable(textOrChildTextNoQuotes()).ifPresent(result::add);
-            children.stream().map(YamlElement::textOrChildTextNoQuotes).filter(Objects::nonNull).forEach(result::add);
+            children().stream().map(YamlElement::textOrChildTextNoQuotes).filter(Objects::nonNull).forEach(result::add);
         }
         return result;
     }
@@ -270,12 +350,12 @@ public class YamlElement {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         final YamlElement that = (YamlElement) o;
-        return startIndexAbs == that.startIndexAbs && endIndexAbs == that.endIndexAbs && Objects.equals(key, that.key) && Objects.equals(text, that.text);
+        return node == that.node && tree == that.tree;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(startIndexAbs, endIndexAbs, key, text);
+        return 31 * System.identityHashCode(tree) + node;
     }
 
     @Override
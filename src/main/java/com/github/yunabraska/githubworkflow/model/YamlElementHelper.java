@@ -3,9 +3,8 @@ package com.github.yunabraska.githubworkflow.model;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.yaml.YAMLLanguage;
 import org.jetbrains.yaml.psi.YAMLDocument;
 import org.jetbrains.yaml.psi.YAMLFile;
 import org.jetbrains.yaml.psi.YAMLKeyValue;
@@ -14,13 +13,13 @@ import org.jetbrains.yaml.psi.impl.YAMLBlockScalarImpl;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_JOBS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
 import static com.github.yunabraska.githubworkflow.model.WorkflowContext.WORKFLOW_CONTEXT_MAP;
-import static com.github.yunabraska.githubworkflow.model.YamlElement.createYamlElement;
+import static com.github.yunabraska.githubworkflow.model.WorkflowContext.workflowContextOf;
 import static java.util.Optional.ofNullable;
 
 public class YamlElementHelper {
@@ -47,67 +46,162 @@ public class YamlElementHelper {
 
     public static YamlElement yamlOf(final PsiElement element) {
         final PsiElement psiRoot = getYamlRoot(element);
-        final YamlElement elementRoot = ofNullable(psiRoot).map(root -> yamlOf(createRootElement(element), root)).orElse(null);
-        ofNullable(elementRoot)
-                .map(YamlElement::initContext)
-                .map(yamlElement -> psiRoot)
-                .map(PsiElement::getContainingFile)
-                .map(yamlFile -> Optional.of(yamlFile.getOriginalFile()).map(PsiFile::getVirtualFile).orElseGet(yamlFile::getVirtualFile))
-                .map(VirtualFile::getPath)
-                .ifPresent(patString -> WORKFLOW_CONTEXT_MAP.put(patString, elementRoot.context()));
-        return elementRoot;
-    }
-
-    public static YamlElement yamlOf(final YamlElement parent, final PsiElement psiElement) {
-        if (psiElement == null) {
+        final String path = ofNullable(psiRoot).map(YamlElementHelper::getPath).orElse(null);
+        final WorkflowContext published = ofNullable(path).map(WORKFLOW_CONTEXT_MAP::get).orElse(null);
+        final TextChange change = ofNullable(published).flatMap(WorkflowContext::pendingChange).orElse(null);
+        //INCREMENTAL: rebuild only the edited job/step
+        final WorkflowContext context = ofNullable(change)
+                .filter(c -> isCommitted(psiRoot))
+                .flatMap(c -> yamlOf(published, psiRoot, c))
+                .or(() -> ofNullable(yamlOfRoot(element, psiRoot)).map(YamlElement::context).map(c -> isCommitted(psiRoot) ? c : c.invalidate()))
+                .orElse(null);
+        if (context != null && path != null) {
+            WorkflowContext.publish(path, context, published, change);
+        }
+        return ofNullable(context).map(WorkflowContext::root).orElse(null);
+    }
+
+    //COMPLETION: reuses the context of the original file and builds only the job/step at the cursor from the completion copy
+    public static YamlElement yamlOf(final PsiElement position, final int offset) {
+        final PsiFile copy = position.getContainingFile();
+        final PsiFile original = ofNullable(copy).map(PsiFile::getOriginalFile).filter(file -> file != copy).orElse(null);
+        return ofNullable(original)
+                .map(file -> ofNullable(WORKFLOW_CONTEXT_MAP.get(getPath(file)))
+                        .filter(context -> context.pendingChange().isEmpty())
+                        .map(WorkflowContext::root)
+                        .orElseGet(() -> Arrays.stream(file.getChildren()).findFirst().map(YamlElementHelper::yamlOf).orElse(null)))
+                .flatMap(root -> findJobOrStep(root, offset, offset))
+                .flatMap(previous -> findPsi(copy, previous).map(psi -> yamlOfSubtree(previous.parent(), psi)))
+                .filter(element -> element.startIndexAbs() <= offset && element.endIndexAbs() >= offset)
+                .orElseGet(() -> yamlOfRoot(position, getYamlRoot(position)));
+    }
+
+    private static YamlElement yamlOfRoot(final PsiElement element, final PsiElement psiRoot) {
+        if (psiRoot == null) {
             return null;
         }
+        final YamlTree tree = YamlTree.yamlTree(null, sourceOf(psiRoot));
+        yamlOf(tree, tree.add(YamlTree.NONE, -1, -1, null, true), psiRoot);
+        final YamlElement root = tree.trim().root();
+        return workflowContextOf(root).root();
+    }
+
+    //DETACHED SUBTREE: the root of the psi element knows its parent, but the parent doesn't know its new child
+    private static YamlElement yamlOfSubtree(final YamlElement parent, final PsiElement psiElement) {
+        final YamlTree tree = YamlTree.yamlTree(parent, sourceOf(psiElement));
+        yamlOf(tree, YamlTree.NONE, psiElement);
+        return tree.trim().root();
+    }
+
+    private static Optional<WorkflowContext> yamlOf(final WorkflowContext context, final PsiElement psiRoot, final TextChange change) {
+        //REPLACED SUBTREES STAY IN THE ARRAYS - rebuild everything when they are more than half of the tree
+        final Optional<YamlElement> previous = findJobOrStep(context.root(), change.start(), change.oldEnd()).filter(element -> element.tree().garbage() * 2 < element.tree().size());
+        return previous
+                .flatMap(element -> findPsi(psiRoot.getContainingFile(), element))
+                .map(psi -> yamlOfSubtree(null, psi))
+                .filter(element -> element.startIndexAbs() == previous.get().startIndexAbs() && element.endIndexAbs() == previous.get().endIndexAbs() + change.delta())
+                .flatMap(element -> context.replace(previous.get(), element));
+    }
+
+    //SMALLEST STEP OR JOB WHICH CONTAINS THE RANGE
+    private static Optional<YamlElement> findJobOrStep(final YamlElement root, final int startIndexAbs, final int endIndexAbs) {
+        YamlElement result = null;
+        YamlElement current = root;
+        while (current != null) {
+            final YamlElement parent = current;
+            current = parent.children().stream().filter(child -> child.startIndexAbs() <= startIndexAbs && child.endIndexAbs() >= endIndexAbs).findFirst().orElse(null);
+            if (current != null && isJobOrStep(current)) {
+                result = current;
+            }
+        }
+        return ofNullable(result);
+    }
+
+    private static boolean isJobOrStep(final YamlElement element) {
+        return ofNullable(element.parent()).map(YamlElement::key).filter(key -> (FIELD_JOBS.equals(key) && element.key() != null) || (FIELD_STEPS.equals(key) && element.key() == null)).isPresent();
+    }
+
+    //PSI ELEMENT WITH THE SAME START AND ROLE AS THE GIVEN ELEMENT
+    private static Optional<PsiElement> findPsi(final PsiFile file, final YamlElement element) {
+        final String parentKey = element.parent().key();
+        PsiElement psi = ofNullable(file).map(f -> f.findElementAt(element.startIndexAbs())).orElse(null);
+        while (psi != null && !(psi instanceof PsiFile)) {
+            final TextRange range = psi.getTextRange();
+            if (range != null && range.getStartOffset() < element.startIndexAbs()) {
+                return Optional.empty();
+            }
+            if ((element.key() == null ? psi instanceof YAMLSequenceItem : psi instanceof YAMLKeyValue) && parentKey.equals(parentKeyOf(psi))) {
+                return Optional.of(psi);
+            }
+            psi = psi.getParent();
+        }
+        return Optional.empty();
+    }
 
-        //INVOKE ONLY ONE: getTextRange invoke only once as it can be slow in deep trees
-        final Optional<TextRange> range = ofNullable(psiElement.getTextRange());
+    private static String parentKeyOf(final PsiElement psi) {
+        PsiElement parent = psi.getParent();
+        while (parent != null && !(parent instanceof YAMLKeyValue) && !(parent instanceof YAMLSequenceItem) && !(parent instanceof PsiFile)) {
+            parent = parent.getParent();
+        }
+        return parent instanceof final YAMLKeyValue keyValue ? keyValue.getKeyText() : null;
+    }
 
-        //PREPARE RESULT
-        final YamlElement result = createYamlElement(
-                range.map(TextRange::getStartOffset).orElse(-1),
-                range.map(TextRange::getEndOffset).orElse(-1),
-                (psiElement instanceof final YAMLKeyValue keyValue ? keyValue.getKeyText() : null),
-                hasChildren(psiElement) ? null : psiElement.getText()
-        );
+    private static boolean isCommitted(final PsiElement psiElement) {
+        return ofNullable(psiElement.getContainingFile())
+                .filter(file -> file.getVirtualFile() != null)
+                .map(file -> {
+                    final PsiDocumentManager manager = PsiDocumentManager.getInstance(file.getProject());
+                    return ofNullable(manager.getDocument(file)).map(manager::isCommitted).orElse(true);
+                })
+                .orElse(true);
+    }
 
-        //GET ALL CHILDREN
-        final List<YamlElement> children = Stream.concat(getChildren(psiElement, result).stream(), result.children().stream())
-                .distinct()
-                .filter(Objects::nonNull)
-                .filter(child -> !result.equals(child))
-                .toList();
+    //APPENDS THE PSI ELEMENT TO THE TREE - returns the node of the element or the parent node for wrapper elements
+    //ONE PASS: children are linked by node index, no deduplication and no hashing of the element text
+    public static int yamlOf(final YamlTree tree, final int parent, final PsiElement psiElement) {
+        if (psiElement == null) {
+            return parent;
+        }
+
+        //INVOKE ONLY ONE: getTextRange, getChildren and getContentRanges can be slow in deep trees
+        final TextRange range = psiElement.getTextRange();
+        if (psiElement instanceof final YAMLBlockScalarImpl blockScalar) {
+            return blockScalar(tree, parent, range, blockScalar.getContentRanges());
+        }
+        final PsiElement[] children = psiElement.getChildren();
+        final boolean hasChildren = children.length > 0;
+        final String key = psiElement instanceof final YAMLKeyValue keyValue ? keyValue.getKeyText() : null;
 
         //AVOID WRAPPER ELEMENTS - exclude YAMLSequenceItem as it represents list items "- name: something"
-        if (result.key() == null && result.text() == null && !(psiElement instanceof YAMLSequenceItem)) {
-            if (children.size() == 1) {
-                return children.get(0).parent(parent);
-            } else {
-                return parent.children(children);
-            }
+        final int node = key == null && hasChildren && !(psiElement instanceof YAMLSequenceItem) && parent != YamlTree.NONE
+                ? parent
+                : tree.add(parent, range == null ? -1 : range.getStartOffset(), range == null ? -1 : range.getEndOffset(), key, !hasChildren);
+
+        //ADD ALL CHILDREN
+        for (final PsiElement child : children) {
+            yamlOf(tree, node, child);
         }
-        return result.parent(parent).children(children);
+        return node;
     }
 
-    @NotNull
-    private static List<YamlElement> getChildren(final PsiElement psiElement, final YamlElement result) {
-        return Optional.of(psiElement)
-                .filter(YAMLBlockScalarImpl.class::isInstance)
-                .map(YAMLBlockScalarImpl.class::cast)
-                .map(YamlElementHelper::createChildren).orElseGet(() -> Arrays.stream(psiElement.getChildren()).map(psi -> yamlOf(result, psi)).toList());
+    //BLOCK SCALAR: one leaf from the first to the last content line - lines are views of the leaf [YamlElement.lines]
+    private static int blockScalar(final YamlTree tree, final int parent, final TextRange range, final List<TextRange> lines) {
+        if (range == null) {
+            return parent;
+        }
+        final int startOffset = range.getStartOffset();
+        return lines.isEmpty()
+                ? tree.add(parent, startOffset, range.getEndOffset(), null, true)
+                : tree.add(parent, startOffset + lines.get(0).getStartOffset(), startOffset + lines.get(lines.size() - 1).getEndOffset(), null, true);
     }
 
-    @NotNull
-    private static List<YamlElement> createChildren(final YAMLBlockScalarImpl psi) {
-        return psi.getContentRanges().stream().map(textRange -> createYamlElement(
-                psi.getTextRange().getStartOffset() + textRange.getStartOffset(),
-                psi.getTextRange().getStartOffset() + textRange.getEndOffset(),
-                null,
-                psi.getText().substring(textRange.getStartOffset(), textRange.getEndOffset())
-        )).toList();
+    //IMMUTABLE SNAPSHOT WHICH MATCHES THE PSI OFFSETS - the document only when the psi is committed
+    private static CharSequence sourceOf(final PsiElement psiElement) {
+        final PsiFile file = psiElement.getContainingFile();
+        if (file == null) {
+            return psiElement.getText();
+        }
+        return isCommitted(psiElement) ? file.getViewProvider().getContents() : file.getText();
     }
 
     public static boolean hasChildren(final PsiElement psiElement) {
@@ -121,39 +215,6 @@ public class YamlElementHelper {
     }
 
 
-    private static YamlElement createRootElement(final PsiElement element) {
-        return addChildren(new YamlElement(
-                -1,
-                -1,
-                null,
-                element.getText(),
-                true
-        ), element.getChildren());
-    }
-
-    private static YamlElement addChildren(final YamlElement parent, final PsiElement[] children) {
-        if (children != null && parent != null) {
-            parent.children().addAll(Arrays.stream(children)
-                    .filter(child -> child.getLanguage().isKindOf(YAMLLanguage.INSTANCE))
-                    .map(child -> yamlOf(parent, child))
-                    .filter(Objects::nonNull)
-                    .filter(e -> !e.equals(parent))
-                    .toList());
-        }
-        return parent;
-    }
-
-
-    public static List<YamlElement> filterNodesRecursive(final YamlElement currentNode, final Predicate<YamlElement> filter, final List<YamlElement> resultNodes) {
-        if (filter.test(currentNode)) {
-            resultNodes.add(currentNode);
-        }
-        for (final YamlElement child : currentNode.children) {
-            filterNodesRecursive(child, filter, resultNodes);
-        }
-        return resultNodes;
-    }
-
     public static boolean hasText(final String str) {
         return (str != null && !str.isEmpty() && containsText(str));
     }
@@ -0,0 +1,437 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import static com.github.yunabraska.githubworkflow.model.WorkflowContext.workflowContextOf;
+import static com.github.yunabraska.githubworkflow.model.YamlTree.NONE;
+
+//STREAMING BUILDER: same tree shape as the PSI based builder, straight from the text - no PSI, no read action, any thread
+//key values with their value as children, sequence items, scalars as leaves, a block scalar is a single leaf [lines on demand, see YamlTree.line]
+//not supported: anchors/aliases/tags are kept as plain text, implicit flow pairs [a: b]
+public class YamlScanner {
+
+    private final CharSequence text;
+    private final int length;
+    private final YamlTree tree;
+    private int pos;
+
+    private YamlScanner(final CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+        this.tree = YamlTree.yamlTree(null, text);
+    }
+
+    public static YamlElement yamlOf(final CharSequence text) {
+        final YamlScanner scanner = new YamlScanner(text == null ? "" : text);
+        final int root = scanner.tree.add(NONE, -1, -1, null, true);
+        scanner.skipBlankLines();
+        while (scanner.pos < scanner.length) {
+            scanner.node(root, scanner.column(scanner.pos));
+        }
+        return workflowContextOf(scanner.tree.trim().root()).root();
+    }
+
+    //BLOCK NODE AT THE CURRENT CONTENT - returns the end offset of the node, leaves pos at the next content line
+    private int node(final int parent, final int column) {
+        if (isSequenceEntry(pos)) {
+            return sequence(parent, column);
+        } else if (isKey(pos)) {
+            return mapping(parent, column);
+        }
+        return inline(parent, column - 1);
+    }
+
+    private int mapping(final int parent, final int column) {
+        int result;
+        do {
+            final int keyStart = pos;
+            final String key = readKey();
+            final int keyValue = tree.add(parent, keyStart, pos, key, false);
+            final int valueEnd = value(keyValue, column);
+            //NO VALUE: the key value is a leaf [key:]
+            tree.hasText(keyValue, valueEnd < 0);
+            result = valueEnd < 0 ? tree.end(keyValue) : valueEnd;
+            tree.end(keyValue, result);
+        } while (pos < length && column(pos) == column && isKey(pos));
+        return result;
+    }
+
+    private int sequence(final int parent, final int column) {
+        int result;
+        do {
+            final int dash = pos;
+            final int item = tree.add(parent, dash, dash + 1, null, false);
+            pos++;
+            skipSpaces();
+            final int itemEnd;
+            if (isLineEnd(pos)) {
+                nextLine();
+                skipBlankLines();
+                itemEnd = pos < length && column(pos) > column ? node(item, column(pos)) : -1;
+            } else if (isSequenceEntry(pos)) {
+                itemEnd = sequence(item, column(pos));
+            } else if (isKey(pos)) {
+                itemEnd = mapping(item, column(pos));
+            } else {
+                itemEnd = inline(item, column);
+            }
+            //NO VALUE: the item is a leaf [-]
+            tree.hasText(item, itemEnd < 0);
+            result = itemEnd < 0 ? dash + 1 : itemEnd;
+            tree.end(item, result);
+        } while (pos < length && column(pos) == column && isSequenceEntry(pos));
+        return result;
+    }
+
+    //VALUE OF A KEY: inline, on the next lines or none [-1]
+    private int value(final int keyValue, final int column) {
+        skipSpaces();
+        if (isLineEnd(pos)) {
+            nextLine();
+            skipBlankLines();
+            final boolean nested = pos < length && (column(pos) > column || (column(pos) == column && isSequenceEntry(pos)));
+            return nested ? node(keyValue, column(pos)) : -1;
+        }
+        return inline(keyValue, column);
+    }
+
+    //VALUE STARTING ON THE CURRENT LINE - column = indentation of the owner, deeper lines continue the value
+    private int inline(final int parent, final int column) {
+        final char c = text.charAt(pos);
+        final int result;
+        if (c == '|' || c == '>') {
+            return blockScalar(parent, column);
+        } else if (c == '[' || c == '{') {
+            result = flow(parent);
+        } else if (c == '"' || c == '\'') {
+            final int start = pos;
+            result = quoted(c);
+            tree.add(parent, start, result, null, true);
+        } else {
+            final int start = pos;
+            result = plain(column);
+            tree.add(parent, start, result, null, true);
+        }
+        nextLine();
+        skipBlankLines();
+        return result;
+    }
+
+    //PLAIN SCALAR: until comment or line end, more indented lines continue the scalar
+    private int plain(final int column) {
+        int result = lineValueEnd(pos);
+        int line = lineEnd(pos);
+        while (line < length) {
+            final int next = firstContent(line + 1);
+            if (next >= length || isLineEnd(next) || column(next) <= column) {
+                break;
+            }
+            result = lineValueEnd(next);
+            line = lineEnd(next);
+        }
+        pos = result;
+        return result;
+    }
+
+    private int quoted(final char quote) {
+        pos++;
+        while (pos < length) {
+            final char c = text.charAt(pos);
+            if (quote == '"' && c == '\\') {
+                pos += 2;
+            } else if (c == quote) {
+                if (quote == '\'' && pos + 1 < length && text.charAt(pos + 1) == '\'') {
+                    pos += 2;
+                } else {
+                    return ++pos;
+                }
+            } else {
+                pos++;
+            }
+        }
+        return length;
+    }
+
+    //BLOCK SCALAR [| or >]: one leaf from the first to the last content line, the header only when there is no content
+    //lines are views of the leaf [YamlElement.lines]
+    private int blockScalar(final int parent, final int column) {
+        final int start = pos;
+        final int headerEnd = lineValueEnd(pos);
+        int first = -1;
+        int result = -1;
+        int indent = -1;
+        int line = lineEnd(pos);
+        while (line < length) {
+            final int lineStart = line + 1;
+            final int content = firstContent(lineStart);
+            line = lineEnd(lineStart);
+            if (content >= length || isLineEnd(content)) {
+                continue;
+            }
+            final int contentColumn = content - lineStart;
+            if (indent == -1) {
+                if (contentColumn <= column) {
+                    line = lineStart - 1;
+                    break;
+                }
+                indent = contentColumn;
+            } else if (contentColumn < indent) {
+                line = lineStart - 1;
+                break;
+            }
+            first = first == -1 ? lineStart + indent : first;
+            result = trimLineEnd(lineStart, line);
+        }
+        if (result != -1) {
+            tree.add(parent, first, result, null, true);
+        } else {
+            tree.add(parent, start, headerEnd, null, true);
+            result = headerEnd;
+        }
+        pos = Math.min(length, line + 1);
+        skipBlankLines();
+        return result;
+    }
+
+    //FLOW COLLECTIONS [a, b] {a: b} - can span lines
+    private int flow(final int parent) {
+        final boolean sequence = text.charAt(pos) == '[';
+        final char close = sequence ? ']' : '}';
+        pos++;
+        skipFlowSpace();
+        while (pos < length && text.charAt(pos) != close) {
+            final int start = pos;
+            if (sequence) {
+                final int item = tree.add(parent, start, start, null, false);
+                tree.end(item, flowNode(item));
+            } else {
+                final String key = readFlowKey();
+                final int keyValue = tree.add(parent, start, pos, key, false);
+                skipFlowSpace();
+                final boolean hasValue = pos < length && text.charAt(pos) != ',' && text.charAt(pos) != close;
+                tree.hasText(keyValue, !hasValue);
+                tree.end(keyValue, hasValue ? flowNode(keyValue) : tree.end(keyValue));
+            }
+            skipFlowSpace();
+            if (pos < length && text.charAt(pos) == ',') {
+                pos++;
+                skipFlowSpace();
+            } else if (pos < length && text.charAt(pos) != close) {
+                //INVALID: stop at the line end
+                pos = lineEnd(pos);
+                return pos;
+            }
+        }
+        pos = Math.min(length, pos + 1);
+        return pos;
+    }
+
+    private int flowNode(final int parent) {
+        final char c = text.charAt(pos);
+        if (c == '[' || c == '{') {
+            return flow(parent);
+        }
+        final int start = pos;
+        if (c == '"' || c == '\'') {
+            quoted(c);
+        } else {
+            int end = pos;
+            while (pos < length && !isFlowEnd(text.charAt(pos))) {
+                if (!Character.isWhitespace(text.charAt(pos))) {
+                    end = pos + 1;
+                }
+                pos++;
+            }
+            pos = end;
+        }
+        tree.add(parent, start, pos, null, true);
+        return pos;
+    }
+
+    private String readFlowKey() {
+        final int start = pos;
+        if (text.charAt(pos) == '"' || text.charAt(pos) == '\'') {
+            quoted(text.charAt(pos));
+            final String result = unquote(start, pos);
+            skipFlowSpace();
+            if (pos < length && text.charAt(pos) == ':') {
+                pos++;
+            }
+            return result;
+        }
+        int end = pos;
+        while (pos < length && text.charAt(pos) != ':' && !isFlowEnd(text.charAt(pos))) {
+            if (!Character.isWhitespace(text.charAt(pos))) {
+                end = pos + 1;
+            }
+            pos++;
+        }
+        final String result = text.subSequence(start, end).toString();
+        if (pos < length && text.charAt(pos) == ':') {
+            pos++;
+        }
+        return result;
+    }
+
+    private String readKey() {
+        final int start = pos;
+        if (text.charAt(pos) == '"' || text.charAt(pos) == '\'') {
+            quoted(text.charAt(pos));
+            final String result = unquote(start, pos);
+            skipSpaces();
+            pos++;
+            return result;
+        }
+        final int colon = keyColon(pos);
+        pos = colon;
+        final String result = text.subSequence(start, trimEnd(start, colon)).toString();
+        pos++;
+        return result;
+    }
+
+    private String unquote(final int start, final int end) {
+        final char quote = text.charAt(start);
+        final String result = text.subSequence(start + 1, Math.max(start + 1, end - 1)).toString();
+        return quote == '\'' ? result.replace("''", "'") : result.replace("\\\"", "\"");
+    }
+
+    //KEY: [key: ...] [key:] ["key": ...] on the current line
+    private boolean isKey(final int p) {
+        final char c = text.charAt(p);
+        if (c == '"' || c == '\'') {
+            final int saved = pos;
+            pos = p;
+            quoted(c);
+            skipSpaces();
+            final boolean result = pos < length && text.charAt(pos) == ':' && isSeparator(pos + 1);
+            pos = saved;
+            return result;
+        }
+        return c != '[' && c != '{' && c != '|' && c != '>' && c != '#' && keyColon(p) != -1;
+    }
+
+    private int keyColon(final int p) {
+        final int end = lineEnd(p);
+        for (int i = p; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == ':' && isSeparator(i + 1)) {
+                return i;
+            } else if (c == '#' && i > p && Character.isWhitespace(text.charAt(i - 1))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSequenceEntry(final int p) {
+        return text.charAt(p) == '-' && isSeparator(p + 1);
+    }
+
+    private boolean isSeparator(final int p) {
+        return p >= length || Character.isWhitespace(text.charAt(p));
+    }
+
+    private boolean isFlowEnd(final char c) {
+        return c == ',' || c == ']' || c == '}';
+    }
+
+    //NOTHING BUT COMMENT OR WHITESPACE UNTIL THE LINE END
+    private boolean isLineEnd(final int p) {
+        return p >= length || text.charAt(p) == '\n' || text.charAt(p) == '\r' || text.charAt(p) == '#';
+    }
+
+    //END OF THE VALUE ON THE LINE: before comment and trailing whitespace
+    private int lineValueEnd(final int p) {
+        final int end = lineEnd(p);
+        for (int i = p; i < end; i++) {
+            if (text.charAt(i) == '#' && i > p && Character.isWhitespace(text.charAt(i - 1))) {
+                return trimEnd(p, i);
+            }
+        }
+        return trimEnd(p, end);
+    }
+
+    private int trimLineEnd(final int start, final int end) {
+        return end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private int trimEnd(final int start, final int end) {
+        int result = end;
+        while (result > start && Character.isWhitespace(text.charAt(result - 1))) {
+            result--;
+        }
+        return result;
+    }
+
+    private int lineEnd(final int p) {
+        int result = p;
+        while (result < length && text.charAt(result) != '\n') {
+            result++;
+        }
+        return result;
+    }
+
+    private int firstContent(final int lineStart) {
+        int result = lineStart;
+        while (result < length && (text.charAt(result) == ' ' || text.charAt(result) == '\t')) {
+            result++;
+        }
+        return result;
+    }
+
+    private int column(final int p) {
+        int result = p;
+        while (result > 0 && text.charAt(result - 1) != '\n') {
+            result--;
+        }
+        return p - result;
+    }
+
+    private void skipSpaces() {
+        while (pos < length && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) {
+            pos++;
+        }
+    }
+
+    private void skipFlowSpace() {
+        while (pos < length) {
+            final char c = text.charAt(pos);
+            if (c == '#') {
+                pos = lineEnd(pos);
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void nextLine() {
+        pos = Math.min(length, lineEnd(pos) + 1);
+    }
+
+    //FROM A LINE START: skips blank lines, comments, directives and document markers
+    private void skipBlankLines() {
+        while (pos < length) {
+            final int content = firstContent(pos);
+            final boolean marker = content == pos && (startsWith(content, "---") || startsWith(content, "...") || startsWith(content, "%"));
+            if (isLineEnd(content) || marker) {
+                pos = content;
+                nextLine();
+            } else {
+                pos = content;
+                return;
+            }
+        }
+    }
+
+    private boolean startsWith(final int p, final String prefix) {
+        if (p + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(p + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+//SHARED RUN-BLOCK SCAN CACHE: offset independent content [key, text, children] of a scanned node - identical [run] blocks share the line table and the shell scan
+//not a store of the tree: every YamlTree keeps its own nodes, shapes exist only for nodes whose content got scanned
+public class YamlShape {
+
+    //BOUNDED LRU: shapes of closed files drop out
+    public static final int MAX_SIZE = 8192;
+    private static final LruCache<YamlShape, YamlShape> POOL = new LruCache<>(MAX_SIZE);
+    private static final YamlShape[] NO_CHILDREN = new YamlShape[0];
+    private static final int[] NO_LINES = new int[0];
+
+    private final String key;
+    private final String text;
+    private final YamlShape[] children;
+    private final int hash;
+    //DERIVED FROM THE CONTENT ONLY - computed once per shape
+    private volatile int[] lines;
+    private volatile ShellScanner.Line shellLine;
+    private volatile ShellWrites shellWrites;
+
+    private YamlShape(final String key, final String text, final YamlShape[] children) {
+        this.key = key;
+        this.text = text;
+        this.children = children;
+        this.hash = 31 * (31 * Objects.hashCode(key) + Objects.hashCode(text)) + Arrays.hashCode(children);
+    }
+
+    public static YamlShape shapeOf(final String key, final String text, final YamlShape[] children) {
+        final YamlShape shape = new YamlShape(StringPool.intern(key), text, children == null || children.length == 0 ? NO_CHILDREN : children);
+        return POOL.putIfAbsent(shape, shape);
+    }
+
+    public static int poolSize() {
+        return POOL.size();
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    public int childCount() {
+        return children.length;
+    }
+
+    public YamlShape child(final int index) {
+        return children[index];
+    }
+
+    //LINE TABLE OF A MULTI LINE TEXT [run: |]: [start, end] per line relative to the text, without indentation and line break
+    public int[] lines() {
+        int[] result = lines;
+        if (result == null) {
+            result = linesOf(text);
+            lines = result;
+        }
+        return result;
+    }
+
+    //[run] TEXT: shell commands - same content, same scan
+    public ShellScanner.Line shellLine() {
+        ShellScanner.Line result = shellLine;
+        if (result == null) {
+            result = ShellScanner.lineOf(text);
+            shellLine = result;
+        }
+        return result;
+    }
+
+    //[run] TEXT: [GITHUB_OUTPUT] and [GITHUB_ENV] writes by line
+    public ShellWrites shellWrites() {
+        ShellWrites result = shellWrites;
+        if (result == null) {
+            result = ShellScanner.writesOf(shellLine());
+            shellWrites = result;
+        }
+        return result;
+    }
+
+    private static int[] linesOf(final String text) {
+        if (text == null) {
+            return NO_LINES;
+        }
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            count += text.charAt(i) == '\n' ? 1 : 0;
+        }
+        final int[] result = new int[count * 2];
+        int line = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == '\n') {
+                int start = lineStart;
+                int end = i;
+                while (start < end && (text.charAt(start) == ' ' || text.charAt(start) == '\t')) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+                result[line * 2] = start;
+                result[line * 2 + 1] = end;
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final YamlShape that = (YamlShape) o;
+        return hash == that.hash && Objects.equals(key, that.key) && Objects.equals(text, that.text) && Arrays.equals(children, that.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,566 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_JOBS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_ON;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_OUTPUTS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_STEPS;
+import static com.github.yunabraska.githubworkflow.config.GitHubWorkflowConfig.FIELD_WITH;
+
+//COMPACT TREE: one int array per node attribute, keys are ids into an interned key table. YamlElement is a flyweight view on a node
+public class YamlTree {
+
+    public static final int NONE = -1;
+    //ANCESTOR ROLES: [jobs.job_id], [steps.item], [with], [outputs], [on]
+    public static final int ROLE_JOB = 0;
+    public static final int ROLE_STEP = 1;
+    public static final int ROLE_WITH = 2;
+    public static final int ROLE_OUTPUTS = 3;
+    public static final int ROLE_ON = 4;
+    private static final int ROLES = 5;
+    //NODES WITH MORE CHILDREN GET A HASH INDEX FOR KEY AND ID LOOKUPS
+    public static final int CHILD_INDEX_THRESHOLD = 8;
+    private static final int INITIAL_CAPACITY = 64;
+
+    protected final YamlElement attachedTo;
+    protected WorkflowContext context;
+    protected int size;
+    protected int garbage;
+    protected int[] starts;
+    protected int[] ends;
+    protected int[] parents;
+    protected int[] firstChildren;
+    protected int[] nextSiblings;
+    protected int[] siblingIndices;
+    protected int[] childCounts;
+    protected int[] keys;
+    //ZERO COPY: text of a node is its range in the source, Strings only for values which are not in the source
+    protected CharSequence source;
+    protected final BitSet sourceTexts = new BitSet();
+    protected String[] texts;
+    //NEAREST ANCESTOR PER ROLE - set when the node is added
+    protected int[][] ancestors = new int[ROLES][];
+    //CACHED ON FIRST USE - parents before children, as the parent path is the prefix
+    //atomic slots: readers of a published tree fill them concurrently
+    protected AtomicReferenceArray<String> paths;
+    //SPARSE, ON FIRST USE: only nodes whose content gets scanned [run blocks, line tables], see YamlShape
+    protected final Map<Integer, YamlShape> shapes = new ConcurrentHashMap<>();
+    protected String[] keyTable;
+    protected int keyCount;
+    protected final Map<String, Integer> keyIds = new HashMap<>();
+    //LAZY: lower case key/id -> first child node
+    protected final Map<Integer, Map<String, Integer>> childKeyIndices = new ConcurrentHashMap<>();
+    protected final Map<Integer, Map<String, Integer>> childIdIndices = new ConcurrentHashMap<>();
+    //ONLY WHILE BUILDING: appending children without walking the sibling chain
+    protected int[] lastChildren;
+
+    protected YamlTree(final YamlElement attachedTo, final CharSequence source, final int capacity) {
+        this.attachedTo = attachedTo;
+        this.source = source;
+        final int initial = Math.max(1, capacity);
+        starts = new int[initial];
+        ends = new int[initial];
+        parents = new int[initial];
+        firstChildren = new int[initial];
+        nextSiblings = new int[initial];
+        siblingIndices = new int[initial];
+        childCounts = new int[initial];
+        keys = new int[initial];
+        for (int role = 0; role < ROLES; role++) {
+            ancestors[role] = new int[initial];
+        }
+        paths = new AtomicReferenceArray<>(initial);
+        lastChildren = new int[initial];
+        keyTable = new String[8];
+    }
+
+    //NEW TREE TO BUILD - attachedTo is the parent of the root node when the tree is a detached subtree of another tree
+    //source = immutable text snapshot the offsets refer to
+    public static YamlTree yamlTree(final YamlElement attachedTo, final CharSequence source) {
+        return new YamlTree(attachedTo, source, INITIAL_CAPACITY);
+    }
+
+    //SINGLE NODE TREE e.g. for values parsed from text [run: echo "key=value" >> $GITHUB_OUTPUT]
+    public static YamlElement detachedElement(final YamlElement parent, final int startIndexAbs, final int endIndexAbs, final String key, final String text) {
+        final YamlTree tree = new YamlTree(parent, null, 1);
+        tree.add(NONE, startIndexAbs, endIndexAbs, key, text);
+        return tree.trim().root();
+    }
+
+    public int add(final int parent, final int startIndexAbs, final int endIndexAbs, final String key, final String text) {
+        final int node = add(parent, startIndexAbs, endIndexAbs, key, false);
+        if (text != null) {
+            if (texts == null) {
+                texts = new String[starts.length];
+            }
+            texts[node] = StringPool.intern(text);
+        }
+        return node;
+    }
+
+    //hasText = the source range of the node is its text [leaf], the root without range has the whole source as text
+    public int add(final int parent, final int startIndexAbs, final int endIndexAbs, final String key, final boolean hasText) {
+        ensureCapacity(size + 1);
+        final int node = size++;
+        starts[node] = startIndexAbs;
+        ends[node] = endIndexAbs;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        siblingIndices[node] = parent == NONE ? 0 : childCounts[parent];
+        childCounts[node] = 0;
+        keys[node] = keyId(key);
+        sourceTexts.set(node, hasText);
+        if (lastChildren != null) {
+            lastChildren[node] = NONE;
+        }
+        if (parent != NONE) {
+            link(parent, node);
+        }
+        ancestors(node);
+        return node;
+    }
+
+    //DONE BUILDING: drops the spare capacity
+    public YamlTree trim() {
+        lastChildren = null;
+        resize(size);
+        return this;
+    }
+
+    public enum Visit {
+        CONTINUE,
+        SKIP_CHILDREN,
+        STOP
+    }
+
+    @FunctionalInterface
+    public interface NodeVisitor {
+        Visit visit(int node);
+    }
+
+    //PRE ORDER WALK OF THE SUBTREE: follows the child/sibling/parent links, no stack, no recursion and no allocations
+    //returns false when the visitor stopped the walk
+    public boolean walk(final int scope, final NodeVisitor visitor) {
+        int node = scope;
+        while (node != NONE) {
+            final Visit visit = visitor.visit(node);
+            if (visit == Visit.STOP) {
+                return false;
+            }
+            node = next(scope, node, visit == Visit.CONTINUE);
+        }
+        return true;
+    }
+
+    //LAZY PRE ORDER STREAM OF THE SUBTREE - same order as [walk], elements are created while consumed
+    public Stream<YamlElement> stream(final int scope) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            private int node = scope;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super YamlElement> action) {
+                if (node == NONE) {
+                    return false;
+                }
+                final int current = node;
+                node = next(scope, current, true);
+                action.accept(new YamlElement(YamlTree.this, current));
+                return true;
+            }
+        }, false);
+    }
+
+    //PRE ORDER SUCCESSOR IN THE SUBTREE - NONE at its end
+    private int next(final int scope, final int node, final boolean children) {
+        if (children && firstChildren[node] != NONE) {
+            return firstChildren[node];
+        }
+        int result = node;
+        while (result != scope && nextSiblings[result] == NONE) {
+            result = parents[result];
+        }
+        return result == scope ? NONE : nextSiblings[result];
+    }
+
+    public YamlElement root() {
+        return size > 0 ? new YamlElement(this, 0) : null;
+    }
+
+    public YamlElement element(final int node) {
+        return node == NONE ? null : new YamlElement(this, node);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int garbage() {
+        return garbage;
+    }
+
+    public int start(final int node) {
+        return starts[node];
+    }
+
+    public int end(final int node) {
+        return ends[node];
+    }
+
+    //BUILDERS WHICH KNOW THE END OR THE TEXT OF A NODE ONLY AFTER ITS CHILDREN
+    protected void end(final int node, final int endIndexAbs) {
+        ends[node] = endIndexAbs;
+    }
+
+    protected void hasText(final int node, final boolean hasText) {
+        sourceTexts.set(node, hasText);
+    }
+
+    public int parent(final int node) {
+        return parents[node];
+    }
+
+    public int firstChild(final int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(final int node) {
+        return nextSiblings[node];
+    }
+
+    public int siblingIndex(final int node) {
+        return siblingIndices[node];
+    }
+
+    public int childCount(final int node) {
+        return childCounts[node];
+    }
+
+    //FIRST CHILD WITH THE KEY (IGNORE CASE)
+    public int child(final int node, final String key) {
+        if (key == null) {
+            return NONE;
+        }
+        if (childCounts[node] > CHILD_INDEX_THRESHOLD) {
+            return childKeyIndices.computeIfAbsent(node, this::childKeyIndex).getOrDefault(key.toLowerCase(Locale.ROOT), NONE);
+        }
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (key.equalsIgnoreCase(key(child))) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    //FIRST CHILD WITH THE ID (IGNORE CASE)
+    public int childId(final int node, final String id) {
+        if (id == null) {
+            return NONE;
+        }
+        if (childCounts[node] > CHILD_INDEX_THRESHOLD) {
+            return childIdIndices.computeIfAbsent(node, this::childIdIndex).getOrDefault(id.toLowerCase(Locale.ROOT), NONE);
+        }
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (id.equalsIgnoreCase(new YamlElement(this, child).id())) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    public String key(final int node) {
+        return keys[node] == NONE ? null : keyTable[keys[node]];
+    }
+
+    //READS DON'T INTERN - only keys and given values are pooled while building
+    public String text(final int node) {
+        final CharSequence result = textSequence(node);
+        return result == null ? null : result.toString();
+    }
+
+    public CharSequence textSequence(final int node) {
+        if (texts != null && texts[node] != null) {
+            return texts[node];
+        }
+        if (source == null || !sourceTexts.get(node)) {
+            return null;
+        }
+        return starts[node] < 0 ? source : source.subSequence(starts[node], ends[node]);
+    }
+
+    public int ancestor(final int node, final int role) {
+        return ancestors[role][node];
+    }
+
+    public boolean hasRole(final int node, final int role) {
+        return switch (role) {
+            case ROLE_JOB -> FIELD_JOBS.equals(parentKey(node));
+            case ROLE_STEP -> FIELD_STEPS.equals(parentKey(node));
+            case ROLE_WITH -> FIELD_WITH.equals(key(node));
+            case ROLE_OUTPUTS -> FIELD_OUTPUTS.equals(key(node));
+            case ROLE_ON -> FIELD_ON.equals(key(node));
+            default -> false;
+        };
+    }
+
+    public String path(final int node) {
+        String result = paths.get(node);
+        if (result == null) {
+            final YamlElement element = new YamlElement(this, node);
+            final YamlElement parent = element.parent();
+            result = (parent == null ? "" : parent.path() + "/") + element.keyOrIdOrName();
+            paths.set(node, result);
+        }
+        return result;
+    }
+
+    public YamlShape shape(final int node) {
+        YamlShape result = shapes.get(node);
+        if (result == null) {
+            final YamlShape[] children = new YamlShape[childCounts[node]];
+            int index = 0;
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                children[index++] = shape(child);
+            }
+            result = YamlShape.shapeOf(key(node), text(node), children);
+            shapes.put(node, result);
+        }
+        return result;
+    }
+
+    //LINE VIEW OF A MULTI LINE LEAF [run: |] - a detached node on demand, the tree keeps one node per block
+    public YamlElement line(final int node, final int index) {
+        final int[] lines = shape(node).lines();
+        if (index < 0 || index * 2 >= lines.length || starts[node] < 0) {
+            return null;
+        }
+        final int start = starts[node] + lines[index * 2];
+        final int end = starts[node] + lines[index * 2 + 1];
+        if (source != null && sourceTexts.get(node) && (texts == null || texts[node] == null)) {
+            final YamlTree result = new YamlTree(element(node), source, 1);
+            result.add(NONE, start, end, null, true);
+            return result.trim().root();
+        }
+        return detachedElement(element(node), start, end, null, textSequence(node).subSequence(lines[index * 2], lines[index * 2 + 1]).toString());
+    }
+
+    //COPY ON WRITE: the copy gets the edits, views of this tree stay valid [extra = spare capacity]
+    public YamlTree copy(final int extra) {
+        final YamlTree result = new YamlTree(attachedTo, source, 1);
+        result.size = size;
+        result.garbage = garbage;
+        result.starts = starts;
+        result.ends = ends;
+        result.parents = parents;
+        result.firstChildren = firstChildren;
+        result.nextSiblings = nextSiblings;
+        result.siblingIndices = siblingIndices;
+        result.childCounts = childCounts;
+        result.keys = keys;
+        result.texts = texts;
+        result.ancestors = ancestors.clone();
+        result.paths = paths;
+        result.lastChildren = null;
+        result.resize(size + extra);
+        result.sourceTexts.or(sourceTexts);
+        result.keyTable = keyTable.clone();
+        result.keyCount = keyCount;
+        result.keyIds.putAll(keyIds);
+        result.childKeyIndices.putAll(childKeyIndices);
+        result.childIdIndices.putAll(childIdIndices);
+        result.shapes.putAll(shapes);
+        return result;
+    }
+
+    //COPIES THE SUBTREE INTO THIS TREE IN PLACE OF THE PREVIOUS NODE - views of all other nodes stay valid
+    public int graft(final int previous, final YamlTree subtree) {
+        final int base = size;
+        final int parent = parents[previous];
+        ensureCapacity(size + subtree.size);
+        for (int i = 0; i < subtree.size; i++) {
+            final int node = base + i;
+            starts[node] = subtree.starts[i];
+            ends[node] = subtree.ends[i];
+            parents[node] = subtree.parents[i] == NONE ? parent : base + subtree.parents[i];
+            firstChildren[node] = subtree.firstChildren[i] == NONE ? NONE : base + subtree.firstChildren[i];
+            nextSiblings[node] = subtree.nextSiblings[i] == NONE ? NONE : base + subtree.nextSiblings[i];
+            siblingIndices[node] = subtree.siblingIndices[i];
+            childCounts[node] = subtree.childCounts[i];
+            keys[node] = keyId(subtree.key(i));
+            sourceTexts.set(node, subtree.sourceTexts.get(i));
+            if (subtree.texts != null && subtree.texts[i] != null) {
+                if (texts == null) {
+                    texts = new String[starts.length];
+                }
+                texts[node] = subtree.texts[i];
+            }
+            paths.set(node, null);
+            shapes.remove(node);
+        }
+        size += subtree.size;
+        //THE SUBTREE IS BUILT FROM THE NEW SNAPSHOT, THE REST OF THE TREE GETS SHIFTED INTO IT
+        source = subtree.source != null ? subtree.source : source;
+        nextSiblings[base] = nextSiblings[previous];
+        siblingIndices[base] = siblingIndices[previous];
+        childKeyIndices.remove(parent);
+        childIdIndices.remove(parent);
+        if (firstChildren[parent] == previous) {
+            firstChildren[parent] = base;
+        } else {
+            int sibling = firstChildren[parent];
+            while (nextSiblings[sibling] != previous) {
+                sibling = nextSiblings[sibling];
+            }
+            nextSiblings[sibling] = base;
+        }
+        for (int node = base; node < size; node++) {
+            ancestors(node);
+        }
+        //CONTENT OF THE ANCESTORS CHANGED
+        for (int node = parent; node != NONE; node = parents[node]) {
+            shapes.remove(node);
+        }
+        garbage += count(previous);
+        parents[previous] = NONE;
+        nextSiblings[previous] = NONE;
+        return base;
+    }
+
+    //SHIFTS ALL NODES BELOW [limit] WHICH START OR END AT/BEHIND [fromIndexAbs]
+    public void shift(final int limit, final int fromIndexAbs, final int delta) {
+        for (int node = 0; node < limit; node++) {
+            if (starts[node] >= fromIndexAbs) {
+                starts[node] += delta;
+            }
+            if (ends[node] >= fromIndexAbs) {
+                ends[node] += delta;
+            }
+        }
+    }
+
+    public int count(final int node) {
+        int result = 1;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            result += count(child);
+        }
+        return result;
+    }
+
+    private void ancestors(final int node) {
+        final int parent = parents[node];
+        for (int role = 0; role < ROLES; role++) {
+            ancestors[role][node] = parent == NONE ? NONE : (hasRole(parent, role) ? parent : ancestors[role][parent]);
+        }
+    }
+
+    private Map<String, Integer> childKeyIndex(final int node) {
+        final Map<String, Integer> result = new HashMap<>();
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            final String key = key(child);
+            if (key != null) {
+                result.putIfAbsent(key.toLowerCase(Locale.ROOT), child);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Integer> childIdIndex(final int node) {
+        final Map<String, Integer> result = new HashMap<>();
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            final String id = new YamlElement(this, child).id();
+            if (id != null) {
+                result.putIfAbsent(id.toLowerCase(Locale.ROOT), child);
+            }
+        }
+        return result;
+    }
+
+    private String parentKey(final int node) {
+        final int parent = parents[node];
+        if (parent != NONE) {
+            return key(parent);
+        }
+        return node == 0 && attachedTo != null ? attachedTo.key() : null;
+    }
+
+    private void link(final int parent, final int node) {
+        final int last = lastChildren != null ? lastChildren[parent] : lastChild(parent);
+        if (last == NONE) {
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[last] = node;
+        }
+        if (lastChildren != null) {
+            lastChildren[parent] = node;
+        }
+        childCounts[parent]++;
+    }
+
+    private int lastChild(final int parent) {
+        int result = firstChildren[parent];
+        while (result != NONE && nextSiblings[result] != NONE) {
+            result = nextSiblings[result];
+        }
+        return result;
+    }
+
+    private int keyId(final String key) {
+        if (key == null) {
+            return NONE;
+        }
+        return keyIds.computeIfAbsent(key, k -> {
+            if (keyCount == keyTable.length) {
+                keyTable = Arrays.copyOf(keyTable, keyTable.length * 2);
+            }
+            keyTable[keyCount] = StringPool.intern(k);
+            return keyCount++;
+        });
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > starts.length) {
+            resize(Math.max(capacity, starts.length * 2));
+        }
+    }
+
+    private void resize(final int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        siblingIndices = Arrays.copyOf(siblingIndices, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        if (texts != null) {
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        for (int role = 0; role < ROLES; role++) {
+            ancestors[role] = Arrays.copyOf(ancestors[role], capacity);
+        }
+        paths = copyOf(paths, capacity);
+        if (lastChildren != null) {
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+        }
+    }
+
+    private static <T> AtomicReferenceArray<T> copyOf(final AtomicReferenceArray<T> array, final int capacity) {
+        final AtomicReferenceArray<T> result = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < Math.min(capacity, array.length()); i++) {
+            result.set(i, array.get(i));
+        }
+        return result;
+    }
+}
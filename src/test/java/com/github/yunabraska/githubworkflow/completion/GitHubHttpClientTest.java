@@ -0,0 +1,200 @@
+package com.github.yunabraska.githubworkflow.completion;
+
+import com.github.yunabraska.githubworkflow.model.ActionRef;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.github.yunabraska.githubworkflow.model.ActionRef.actionRefOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//LOCAL STAND-IN: canned GraphQL and raw responses, requests are recorded as [METHOD path auth body]
+public class GitHubHttpClientTest {
+
+    private static final ActionRef CHECKOUT = actionRefOf("actions/checkout@v4");
+    private static final ActionRef CACHE = actionRefOf("actions/cache/save@v3");
+    private static final ActionRef BUILD = actionRefOf("octo/repo/.github/workflows/build.yml@main");
+
+    private final Queue<String> requests = new ConcurrentLinkedQueue<>();
+    private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+    private HttpServer server;
+    private GitHubHttpClient client;
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+        private final Map<String, String> headers;
+
+        private Response(final int status, final String body, final Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        final URI base = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        client = new GitHubHttpClient(base, base, "test");
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetchRawOk() {
+        respond(200, "name: checkout", Map.of("ETag", "\"e1\"", "Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT"));
+        final CacheEntry result = client.fetchRaw(CHECKOUT, null, null).join();
+        assertEquals("name: checkout", result.content());
+        assertEquals("\"e1\"", result.etag());
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", result.lastModified());
+        assertFalse(result.notModified());
+        assertEquals("GET /actions/checkout/v4/action.yml anonymous ", requests.poll());
+    }
+
+    @Test
+    public void fetchRawNotModified() {
+        respond(304, "");
+        final CacheEntry cached = new CacheEntry("name: checkout", "\"e1\"", null, null);
+        final CacheEntry result = client.fetchRaw(CHECKOUT, "token", cached).join();
+        assertTrue(result.notModified());
+        assertEquals("name: checkout", result.content());
+        assertEquals("\"e1\"", result.etag());
+        assertEquals("GET /actions/checkout/v4/action.yml Bearer token If-None-Match:\"e1\" ", requests.poll());
+    }
+
+    @Test
+    public void fetchRawNotFound() {
+        respond(404, "404: Not Found");
+        assertNull(client.fetchRaw(CHECKOUT, null, null).join());
+        assertNull(client.fetchRaw(actionRefOf("./.github/actions/local"), null, null).join());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void fetchRawTriesTokensThenAnonymous() {
+        respond(404, "404: Not Found");
+        respond(401, "Bad credentials");
+        respond(200, "name: checkout");
+        final CacheEntry result = GitHubWorkflowUtils.fetchRaw(client, CHECKOUT, List.of("first", "second"), 0, null).join();
+        assertEquals("name: checkout", result.content());
+        assertEquals("GET /actions/checkout/v4/action.yml Bearer first ", requests.poll());
+        assertEquals("GET /actions/checkout/v4/action.yml Bearer second ", requests.poll());
+        assertEquals("GET /actions/checkout/v4/action.yml anonymous ", requests.poll());
+    }
+
+    @Test
+    public void fetchRawStopsAtFirstContent() {
+        respond(200, "name: checkout");
+        assertEquals("name: checkout", GitHubWorkflowUtils.fetchRaw(client, CHECKOUT, List.of("first", "second"), 0, null).join().content());
+        assertEquals(1, requests.size());
+        assertNull(GitHubWorkflowUtils.fetchRaw(client, CHECKOUT, List.of(), 0, null).join());
+        assertEquals("GET /actions/checkout/v4/action.yml anonymous ", List.copyOf(requests).get(1));
+    }
+
+    @Test
+    public void fetchBlobsBuildsOneAliasPerRef() {
+        respond(200, "{\"data\": {}}");
+        client.fetchBlobs(List.of(CHECKOUT, CACHE, BUILD), "token").join();
+        final String request = requests.poll();
+        assertTrue(request, request.startsWith("POST /graphql Bearer token "));
+        assertTrue(request, request.contains("a0: repository(owner: \\\"actions\\\", name: \\\"checkout\\\") { object(expression: \\\"v4:action.yml\\\")"));
+        assertTrue(request, request.contains("a1: repository(owner: \\\"actions\\\", name: \\\"cache\\\") { object(expression: \\\"v3:save/action.yml\\\")"));
+        assertTrue(request, request.contains("a2: repository(owner: \\\"octo\\\", name: \\\"repo\\\") { object(expression: \\\"main:.github/workflows/build.yml\\\")"));
+        assertTrue(request, request.contains("... on Blob { oid text }"));
+    }
+
+    @Test
+    public void fetchBlobsKeepsPartialResults() {
+        respond(200, "{\"data\": {"
+                + "\"a0\": {\"object\": {\"oid\": \"abc\", \"text\": \"name: checkout\"}},"
+                + "\"a1\": null,"
+                + "\"a2\": {\"object\": null}"
+                + "}, \"errors\": [{\"path\": [\"a1\"], \"message\": \"Could not resolve to a Repository\"}]}");
+        final Map<ActionRef, CacheEntry> result = client.fetchBlobs(List.of(CHECKOUT, CACHE, BUILD), "token").join();
+        assertEquals(1, result.size());
+        assertEquals("name: checkout", result.get(CHECKOUT).content());
+        assertEquals("abc", result.get(CHECKOUT).sha());
+        assertFalse(result.get(CHECKOUT).hasValidators());
+    }
+
+    @Test
+    public void fetchBlobsFailures() {
+        respond(401, "{\"message\": \"Bad credentials\"}");
+        assertNull(client.fetchBlobs(List.of(CHECKOUT), "token").join());
+        respond(200, "{\"errors\": [{\"message\": \"Something went wrong\"}]}");
+        assertTrue(client.fetchBlobs(List.of(CHECKOUT), "token").join().isEmpty());
+        respond(200, "{\"data\": {\"a0\"");
+        assertNull(client.fetchBlobs(List.of(CHECKOUT), "token").join());
+    }
+
+    @Test
+    public void batchedEntryWithSameBlobIdIsNotModified() {
+        respond(200, "{\"data\": {\"a0\": {\"object\": {\"oid\": \"abc\"}}}}");
+        final CacheEntry result = GitHubWorkflowUtils.fetchAction(client, CHECKOUT, List.of("token"), new CacheEntry("name: checkout", null, null, "abc")).join();
+        assertTrue(result.notModified());
+        assertEquals("name: checkout", result.content());
+        assertTrue(requests.poll().contains("... on Blob { oid }"));
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void batchedEntryWithOtherBlobIdIsDownloaded() {
+        respond(200, "{\"data\": {\"a0\": {\"object\": {\"oid\": \"def\"}}}}");
+        respond(200, "name: new", Map.of("ETag", "\"e1\""));
+        final CacheEntry result = GitHubWorkflowUtils.fetchAction(client, CHECKOUT, List.of("token"), new CacheEntry("name: old", null, null, "abc")).join();
+        assertFalse(result.notModified());
+        assertEquals("name: new", result.content());
+        assertEquals("\"e1\"", result.etag());
+        requests.poll();
+        assertEquals("GET /actions/checkout/v4/action.yml Bearer token ", requests.poll());
+    }
+
+    private void respond(final int status, final String body) {
+        respond(status, body, Map.of());
+    }
+
+    private void respond(final int status, final String body, final Map<String, String> headers) {
+        responses.add(new Response(status, body, headers));
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        final String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        final String conditional = exchange.getRequestHeaders().getFirst("If-None-Match");
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                + " " + (auth == null ? "anonymous" : auth)
+                + (conditional == null ? "" : " If-None-Match:" + conditional)
+                + " " + body);
+        final Response response = responses.poll();
+        final int status = response == null ? 404 : response.status;
+        final byte[] bytes = response == null || status == 304 ? new byte[0] : response.body.getBytes(StandardCharsets.UTF_8);
+        if (response != null) {
+            response.headers.forEach((key, value) -> exchange.getResponseHeaders().add(key, value));
+        }
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import com.github.yunabraska.githubworkflow.model.Expression.Chain;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.yunabraska.githubworkflow.model.ExpressionText.expressionTextOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressionTextTest {
+
+    @Test
+    public void chainsWithOffsets() {
+        final String text = "echo ${{ steps.build.outputs.version }} and ${{ github.event['pull_request'].head }}";
+        final List<Chain> chains = expressionTextOf(text, false).chains();
+        assertEquals(2, chains.size());
+        assertEquals("steps.build.outputs.version", String.join(".", chains.get(0).parts()));
+        assertEquals("steps.build.outputs.version", text.substring(chains.get(0).start(), chains.get(0).end()));
+        assertEquals("build", text.substring(chains.get(0).start(1), chains.get(0).end(1)));
+        assertEquals("github.event.pull_request.head", String.join(".", chains.get(1).parts()));
+        assertEquals("'pull_request'", text.substring(chains.get(1).start(2), chains.get(1).end(2)));
+    }
+
+    @Test
+    public void chainsInOperatorsAndFunctions() {
+        final List<Chain> chains = expressionTextOf("${{ needs.*.result == 'ok' && fromJSON(env.X).a }}", false).chains();
+        assertEquals(2, chains.size());
+        assertEquals("needs.*.result", String.join(".", chains.get(0).parts()));
+        assertEquals("env.X", String.join(".", chains.get(1).parts()));
+    }
+
+    @Test
+    public void incompleteChains() {
+        final Chain open = expressionTextOf("${{ inputs. }}", false).chains().get(0);
+        assertFalse(open.isComplete());
+        assertEquals(2, open.size());
+        final Chain unclosed = expressionTextOf("${{ steps.bu", false).chains().get(0);
+        assertTrue(unclosed.isComplete());
+        assertEquals("bu", unclosed.part(1));
+    }
+
+    @Test
+    public void partsBeforeCursor() {
+        final String text = "${{ steps.build.outputs.IntellijIdeaRulezzz }}";
+        final Chain chain = expressionTextOf(text, false).chains().get(0);
+        final String[] prefix = new String[1];
+        assertEquals("steps.build.outputs", String.join(".", chain.partsBefore(text.indexOf("IntellijIdeaRulezzz"), prefix)));
+        assertEquals("", prefix[0]);
+        assertEquals("steps", String.join(".", chain.partsBefore(text.indexOf("build") + 2, prefix)));
+        assertEquals("bu", prefix[0]);
+        assertEquals("", String.join(".", chain.partsBefore(text.indexOf("steps"), prefix)));
+        assertEquals("", prefix[0]);
+        assertEquals("", String.join(".", chain.partsBefore(text.indexOf("steps") + 5, prefix)));
+        assertEquals("steps", prefix[0]);
+    }
+
+    @Test
+    public void chainAtBoundaries() {
+        final String text = "a ${{ inputs.x }} b";
+        final ExpressionText expression = expressionTextOf(text, false);
+        assertTrue(expression.chainAt(text.indexOf("inputs")).isPresent());
+        assertTrue(expression.chainAt(text.indexOf("x") + 1).isPresent());
+        assertFalse(expression.chainAt(text.indexOf("x") + 2).isPresent());
+        assertFalse(expression.chainAt(0).isPresent());
+        assertTrue(expression.inExpression(text.indexOf("${{") + 3));
+        assertFalse(expression.inExpression(text.indexOf("${{") + 2));
+        assertFalse(expression.inExpression(text.length() - 1));
+    }
+
+    @Test
+    public void implicitExpressions() {
+        final ExpressionText expression = expressionTextOf("github.ref == 'main' && env.A", true);
+        assertEquals(2, expression.chains().size());
+        assertTrue(expression.inExpression(0));
+        assertTrue(expressionTextOf("${{ env.A }}", true).inExpression(4));
+        assertTrue(expressionTextOf("plain text", false).isEmpty());
+    }
+
+    @Test
+    public void cursorTextsAreNotCached() {
+        final String text = "${{ inputs.IntellijIdeaRulezzz }}";
+        assertNotSame(expressionTextOf(text, false), expressionTextOf(text, false));
+        assertSame(expressionTextOf("${{ inputs.name }}", false), expressionTextOf("${{ inputs.name }}", false));
+        assertNotSame(expressionTextOf("${{ inputs.name }}", false), expressionTextOf("${{ inputs.name }}", true));
+    }
+
+    @Test
+    public void lexerTokens() {
+        final String text = "x ${{ a.b['c'] >= 1.5 }}";
+        final int from = text.indexOf("a.");
+        final ExpressionLexer lexer = ExpressionLexer.tokenize(text, from, text.indexOf(" }}"));
+        final List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < lexer.size(); i++) {
+            tokens.add(lexer.type(i) + ":" + lexer.text(i));
+        }
+        assertEquals("[IDENTIFIER:a, DOT:., IDENTIFIER:b, LBRACKET:[, STRING:'c', RBRACKET:], OPERATOR:>=, NUMBER:1.5, END:]", tokens.toString());
+        assertEquals(from, lexer.start(0));
+    }
+}
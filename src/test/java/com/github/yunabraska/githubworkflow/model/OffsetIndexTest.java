@@ -0,0 +1,61 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+//RANGES ARE INCLUSIVE AT BOTH ENDS - the cursor right behind a value still belongs to it
+public class OffsetIndexTest {
+
+    private static final String WORKFLOW = "jobs:\n  a:\n    runs-on: x\n  b:\n    steps:\n      - run: y\n";
+    private static final int X = WORKFLOW.indexOf(": x") + 2;
+    private static final int B = WORKFLOW.indexOf("b:");
+    private static final int Y = WORKFLOW.indexOf(": y") + 2;
+
+    private final OffsetIndex index = YamlScanner.yamlOf(WORKFLOW).context().offsetIndex();
+
+    @Test
+    public void closestIsTheSmallestContainingElement() {
+        assertEquals("jobs@0", describe(index.closest(0)));
+        assertEquals("x@" + X, describe(index.closest(X)));
+        assertEquals("runs-on@" + WORKFLOW.indexOf("runs-on"), describe(index.closest(X - 1)));
+        assertEquals("b@" + B, describe(index.closest(B)));
+    }
+
+    @Test
+    public void closestAtBoundaries() {
+        assertEquals("x@" + X, describe(index.closest(X + 1)));
+        assertEquals("jobs@0", describe(index.closest(X + 2)));
+        assertEquals("jobs@0", describe(index.closest(B - 1)));
+        assertEquals("y@" + Y, describe(index.closest(WORKFLOW.length() - 1)));
+        assertFalse(index.closest(WORKFLOW.length()).isPresent());
+    }
+
+    @Test
+    public void nextStartsAtOrBehind() {
+        assertEquals("jobs@0", describe(index.next(0)));
+        assertEquals("a@" + WORKFLOW.indexOf("a:"), describe(index.next(1)));
+        assertEquals("x@" + X, describe(index.next(X)));
+        assertEquals("b@" + B, describe(index.next(X + 1)));
+        assertFalse(index.next(Y + 1).isPresent());
+    }
+
+    @Test
+    public void containingInTreeOrder() {
+        assertEquals("jobs@0", describe(index.containing(X, X + 1, element -> true)));
+        assertEquals("a@" + WORKFLOW.indexOf("a:"), describe(index.containing(X, X + 1, element -> "a".equals(element.key()))));
+        assertFalse(index.containing(X, B, element -> "a".equals(element.key())).isPresent());
+    }
+
+    @Test
+    public void sizeWithoutTheRoot() {
+        assertEquals(YamlScanner.yamlOf(WORKFLOW).allElements().count() - 1, index.size());
+    }
+
+    private static String describe(final Optional<YamlElement> element) {
+        return element.map(e -> (e.key() != null ? e.key() : e.text()) + "@" + e.startIndexAbs()).orElse("-");
+    }
+}
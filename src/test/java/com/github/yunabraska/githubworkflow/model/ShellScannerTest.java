@@ -0,0 +1,95 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShellScannerTest {
+
+    @Test
+    public void quotedAndUnquotedEcho() {
+        assertEquals("O:key=value@0", writesOf("echo \"key=value\" >> $GITHUB_OUTPUT"));
+        assertEquals("E:key=value@0", writesOf("echo key=value >> \"${GITHUB_ENV}\""));
+        assertEquals("O:k=v w@0", writesOf("echo 'k=v w' >>$GITHUB_OUTPUT; echo \"x=1\""));
+        assertEquals("O:a=1@0 O:b=2@0", writesOf("echo -e \"a=1\\nb=2\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:k=v@0", writesOf("echo \"k=v\" > $GITHUB_OUTPUT 2>&1"));
+        assertEquals("O:k=${{ steps.x.outputs.y }}@0", writesOf("echo \"k=${{ steps.x.outputs.y }}\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:key=value@0 E:e=1@1", writesOf("echo \"key=value\" >> $GITHUB_OUTPUT", "echo \"e=1\" >> $GITHUB_ENV"));
+    }
+
+    @Test
+    public void printf() {
+        assertEquals("O:a=$A@0 O:b=2@0", writesOf("printf 'a=%s\\nb=%s\\n' \"$A\" 2 >> $GITHUB_OUTPUT"));
+    }
+
+    @Test
+    public void pwsh() {
+        assertEquals("O:name=val@0", writesOf("\"name=val\" >> $env:GITHUB_OUTPUT"));
+        assertEquals("E:k=v@0", writesOf("echo \"k=v\" | Out-File -FilePath $env:GITHUB_ENV -Append"));
+        assertEquals("O:p=q@0", writesOf("Add-Content -Path $env:GITHUB_OUTPUT -Value \"p=q\""));
+        assertEquals("O:k=v@0", writesOf("echo \"k=v\" | tee -a $GITHUB_OUTPUT"));
+    }
+
+    @Test
+    public void multiLineValues() {
+        assertEquals("O:json=a=b@0 O:z=1@4", writesOf(
+                "echo \"json<<EOF\" >> $GITHUB_OUTPUT",
+                "cat x.json >> $GITHUB_OUTPUT",
+                "echo \"a=b\" >> $GITHUB_OUTPUT",
+                "echo \"EOF\" >> $GITHUB_OUTPUT",
+                "echo z=1 >> $GITHUB_OUTPUT"
+        ));
+        assertEquals("O:first=1@1 O:multi=line@2", writesOf("cat <<EOF >> $GITHUB_OUTPUT", "first=1", "multi<<X", "line", "X", "EOF", "echo no=1"));
+    }
+
+    @Test
+    public void multiLineCommands() {
+        assertEquals("O:a=1@1 O:b=2@2", writesOf("{", "  echo \"a=1\"", "  echo \"b=2\"", "} >> \"$GITHUB_OUTPUT\""));
+        assertEquals("E:c=3@0", writesOf("echo \"c=3\" \\", "  >> $GITHUB_ENV"));
+        assertEquals("", writesOf("echo \"c=3\"", ">> $GITHUB_ENV"));
+    }
+
+    @Test
+    public void compoundCommands() {
+        assertEquals("O:a=b@0", writesOf("if [ -n \"$X\" ]; then echo \"a=b\" >> $GITHUB_OUTPUT; fi"));
+        assertEquals("E:n=$f@0", writesOf("for f in *; do echo \"n=$f\" >> $GITHUB_ENV; done"));
+        assertEquals("O:a=b@1 O:c=d@3", writesOf("if true", "then echo \"a=b\" >> $GITHUB_OUTPUT", "else", "  echo \"c=d\" >> $GITHUB_OUTPUT", "fi"));
+        assertEquals("O:a=b@0", writesOf("while read l; do echo \"a=b\" >> $GITHUB_OUTPUT; done < x"));
+        assertEquals("O:a=b@0", writesOf("! echo \"a=b\" >> $GITHUB_OUTPUT"));
+    }
+
+    @Test
+    public void prefixedCommands() {
+        assertEquals("O:a=b@0", writesOf("sudo echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:a=b@0", writesOf("sudo -E echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:a=b@0", writesOf("time echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:a=b@0", writesOf("command echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertEquals("O:a=b@0", writesOf("exec echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertEquals("E:a=b@0", writesOf("LC_ALL=C echo \"a=b\" >> $GITHUB_ENV"));
+        assertEquals("", writesOf("A=b >> $GITHUB_ENV"));
+    }
+
+    @Test
+    public void ignored() {
+        assertEquals("", writesOf("# echo \"x=1\" >> $GITHUB_OUTPUT", "echo \"k=v\" >&2"));
+        assertEquals("", writesOf("echo \"k=v\" >> $GITHUB_STEP_SUMMARY"));
+    }
+
+    @Test
+    public void writeLines() {
+        final ShellWrites writes = ShellScanner.writesOf(ShellScanner.lineOf("echo hi\nthen echo \"a=b\" >> $GITHUB_OUTPUT"));
+        assertFalse(writes.hasWrite(0));
+        assertTrue(writes.hasWrite(1));
+    }
+
+    private static String writesOf(final String... lines) {
+        final StringBuilder result = new StringBuilder();
+        for (final ShellWrites.Write write : ShellScanner.writesOf(ShellScanner.lineOf(String.join("\n", lines))).writes()) {
+            result.append(write.target() == ShellWrites.Target.GITHUB_OUTPUT ? "O:" : "E:")
+                    .append(write.key()).append('=').append(write.value()).append('@').append(write.line()).append(' ');
+        }
+        return result.toString().trim();
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SymbolTableTest {
+
+    private static final String WORKFLOW = String.join("\n",
+            "env:",
+            "  ROOT: r",
+            "jobs:",
+            "  build:",
+            "    env:",
+            "      JOB: j",
+            "    outputs:",
+            "      version: ${{ steps.Build.outputs.version }}",
+            "    steps:",
+            "      - id: build",
+            "        run: echo \"version=1\" >> $GITHUB_OUTPUT",
+            "      - id: Publish",
+            "        run: echo \"LATE=l\" >> $GITHUB_ENV",
+            "      - name: last",
+            "        env:",
+            "          STEP: s",
+            "        run: echo done",
+            "  test:",
+            "    needs: build",
+            "    steps:",
+            "      - run: echo hi",
+            ""
+    );
+
+    @Test
+    public void stepIdsIgnoreCase() {
+        final SymbolTable symbols = YamlScanner.yamlOf(WORKFLOW).context().symbols();
+        assertTrue(symbols.step("build", "Build").isPresent());
+        assertTrue(symbols.step("build", "BUILD").isPresent());
+        assertTrue(symbols.step("build", "publish").isPresent());
+        assertFalse(symbols.step("build", "missing").isPresent());
+        assertFalse(symbols.step("build", null).isPresent());
+        assertEquals(2, symbols.steps("build").size());
+    }
+
+    @Test
+    public void jobsInDocumentOrder() {
+        final SymbolTable symbols = YamlScanner.yamlOf(WORKFLOW).context().symbols();
+        assertEquals(2, symbols.jobs().size());
+        assertEquals("build", symbols.jobsBefore("test").get(0).key());
+        assertTrue(symbols.jobsBefore("build").isEmpty());
+        assertEquals("${{ steps.Build.outputs.version }}", symbols.jobOutputs("build").get("version"));
+        assertEquals("1", symbols.runOutputs("build", "build").get("version"));
+    }
+
+    @Test
+    public void envScopesFollowTheSteps() {
+        final SymbolTable symbols = YamlScanner.yamlOf(WORKFLOW).context().symbols();
+        final int last = WORKFLOW.indexOf("- name: last");
+        final int publish = WORKFLOW.indexOf("- id: Publish");
+        assertTrue(symbols.envScope(null, 0).contains("ROOT"));
+        assertTrue(symbols.envScope("build", WORKFLOW.indexOf("outputs:")).contains("JOB"));
+        assertFalse(symbols.envScope("build", publish).contains("LATE"));
+        assertTrue(symbols.envScope("build", last).contains("LATE"));
+        assertTrue(symbols.envScope("build", last).contains("STEP"));
+        assertFalse(symbols.envScope("build", publish).contains("STEP"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import org.junit.Test;
+
+import static com.github.yunabraska.githubworkflow.model.TextChange.textChangeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//[start, oldEnd] IN THE BUILT TREE, [newEnd] IN THE CURRENT DOCUMENT
+public class TextChangeTest {
+
+    @Test
+    public void singleEdit() {
+        final TextChange change = textChangeOf(10, 2, 5);
+        assertEquals(new TextChange(10, 12, 15), change);
+        assertEquals(3, change.delta());
+    }
+
+    @Test
+    public void editBehindAChange() {
+        assertEquals(new TextChange(10, 19, 20), textChangeOf(10, 0, 3).merge(20, 2, 0));
+        assertEquals(new TextChange(10, 39, 42), textChangeOf(10, 0, 3).merge(40, 2, 2));
+    }
+
+    @Test
+    public void editBeforeAChange() {
+        assertEquals(new TextChange(5, 10, 13), textChangeOf(10, 0, 3).merge(5, 1, 1));
+    }
+
+    @Test
+    public void editInsideAChange() {
+        assertEquals(new TextChange(10, 10, 14), textChangeOf(10, 0, 5).merge(12, 1, 0));
+        assertEquals(new TextChange(10, 15, 15), textChangeOf(10, 5, 0).merge(10, 0, 5));
+    }
+
+    @Test
+    public void typingMergesIntoOneRange() {
+        TextChange change = textChangeOf(30, 0, 1);
+        for (int i = 1; i < 5; i++) {
+            change = change.merge(30 + i, 0, 1);
+        }
+        assertEquals(new TextChange(30, 30, 35), change);
+    }
+
+    @Test
+    public void wholeDocumentAbsorbsEdits() {
+        final TextChange change = TextChange.wholeDocument().merge(1, 1, 1);
+        assertTrue(change.isWholeDocument());
+        assertEquals(0, change.start());
+    }
+}
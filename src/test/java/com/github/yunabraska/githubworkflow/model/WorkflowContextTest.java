@@ -0,0 +1,143 @@
+package com.github.yunabraska.githubworkflow.model;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+//INCREMENTAL RE-PARSE: a grafted job/step must give the same tree and the same index as a full parse of the edited text
+public class WorkflowContextTest {
+
+    private static final String WORKFLOW = String.join("\n",
+            "on: push",
+            "env:",
+            "  ROOT: r",
+            "jobs:",
+            "  build:",
+            "    runs-on: ubuntu-latest",
+            "    steps:",
+            "      - id: one",
+            "        run: echo \"a=b\" >> $GITHUB_OUTPUT",
+            "      - id: two",
+            "        env:",
+            "          B: 2",
+            "        run: echo \"c=d\" >> $GITHUB_ENV",
+            "      - id: three",
+            "        uses: actions/checkout@v4",
+            "  test:",
+            "    needs: build",
+            "    steps:",
+            "      - run: echo hi",
+            ""
+    );
+
+    @Test
+    public void growingStep() {
+        assertIncremental("echo \"c=d\" >> $GITHUB_ENV", "echo \"c=d\" >> $GITHUB_ENV\n          echo \"long=value\" >> $GITHUB_OUTPUT", "two");
+    }
+
+    @Test
+    public void shrinkingStep() {
+        assertIncremental("echo \"c=d\" >> $GITHUB_ENV", "echo x", "two");
+    }
+
+    @Test
+    public void newChildrenInStep() {
+        assertIncremental("          B: 2\n", "          B: 2\n          C: 3\n          D: 4\n", "two");
+    }
+
+    @Test
+    public void firstAndLastStep() {
+        assertIncremental("echo \"a=b\" >> $GITHUB_OUTPUT", "echo \"a=bb\" >> $GITHUB_OUTPUT", "one");
+        assertIncremental("actions/checkout@v4", "actions/setup-java@v3", "three");
+    }
+
+    @Test
+    public void repeatedEdits() {
+        final String second = WORKFLOW.replace("B: 2", "B: 22");
+        final WorkflowContext first = replaceStep(WorkflowContext.workflowContextOf(YamlScanner.yamlOf(WORKFLOW).tree().root()), second, "two");
+        final String third = second.replace("echo \"a=b\"", "echo \"a=b\" \"x\"");
+        final WorkflowContext result = replaceStep(first, third, "one");
+        assertSameContent(YamlScanner.yamlOf(third).context(), result);
+    }
+
+    @Test
+    public void previousContextStaysValid() {
+        final WorkflowContext previous = YamlScanner.yamlOf(WORKFLOW).context();
+        final String before = dump(previous.root());
+        replaceStep(previous, WORKFLOW.replace("B: 2", "B: 22222"), "two");
+        assertEquals(before, dump(previous.root()));
+    }
+
+    @Test
+    public void pendingChangesMerge() {
+        final WorkflowContext context = YamlScanner.yamlOf(WORKFLOW).context();
+        assertFalse(context.pendingChange().isPresent());
+        assertSame(context, context.change(10, 0, 3));
+        context.change(20, 2, 0);
+        assertEquals(new TextChange(10, 19, 20), context.pendingChange().orElse(null));
+        assertTrue(context.invalidate().pendingChange().map(TextChange::isWholeDocument).orElse(false));
+    }
+
+    private static void assertIncremental(final String from, final String to, final String stepId) {
+        assertTrue(from, WORKFLOW.contains(from));
+        final String edited = WORKFLOW.replace(from, to);
+        final WorkflowContext result = replaceStep(YamlScanner.yamlOf(WORKFLOW).context(), edited, stepId);
+        assertSameContent(YamlScanner.yamlOf(edited).context(), result);
+    }
+
+    //THE STEP OF THE EDITED TEXT AS DETACHED SUBTREE - what the PSI based builder hands to [replace]
+    private static WorkflowContext replaceStep(final WorkflowContext context, final String edited, final String stepId) {
+        final YamlElement previous = stepOf(context, stepId);
+        final YamlElement step = stepOf(YamlScanner.yamlOf(edited).context(), stepId);
+        final YamlTree subtree = YamlTree.yamlTree(previous.parent(), edited);
+        copy(step.tree(), step.node(), subtree, YamlTree.NONE);
+        return context.replace(previous, subtree.trim().root()).orElseThrow();
+    }
+
+    private static YamlElement stepOf(final WorkflowContext context, final String stepId) {
+        return context.steps().values().stream().filter(step -> stepId.equals(step.id())).findFirst().orElseThrow();
+    }
+
+    private static void copy(final YamlTree from, final int node, final YamlTree to, final int parent) {
+        final int copied = from.texts != null && from.texts[node] != null
+                ? to.add(parent, from.start(node), from.end(node), from.key(node), from.texts[node])
+                : to.add(parent, from.start(node), from.end(node), from.key(node), from.sourceTexts.get(node));
+        for (int child = from.firstChild(node); child != YamlTree.NONE; child = from.nextSibling(child)) {
+            copy(from, child, to, copied);
+        }
+    }
+
+    private static void assertSameContent(final WorkflowContext expected, final WorkflowContext actual) {
+        assertEquals(dump(expected.root()), dump(actual.root()));
+        assertEquals(dump(expected.jobs()), dump(actual.jobs()));
+        assertEquals(dump(expected.needs()), dump(actual.needs()));
+        assertEquals(dump(expected.steps()), dump(actual.steps()));
+        assertEquals(dump(expected.envs()), dump(actual.envs()));
+        assertEquals(dump(expected.runEnvs()), dump(actual.runEnvs()));
+        assertEquals(dump(expected.runOutputs()), dump(actual.runOutputs()));
+        assertEquals(expected.offsetIndex().size(), actual.offsetIndex().size());
+    }
+
+    private static String dump(final Map<String, YamlElement> elements) {
+        final Map<String, String> result = new TreeMap<>();
+        elements.forEach((key, element) -> result.put(key, line(element)));
+        return result.toString();
+    }
+
+    //PRE ORDER: key, range and text of every node
+    private static String dump(final YamlElement root) {
+        final StringBuilder result = new StringBuilder();
+        root.allElements().forEach(element -> result.append(line(element)).append('\n'));
+        return result.toString();
+    }
+
+    private static String line(final YamlElement element) {
+        return element.key() + " [" + element.startIndexAbs() + ", " + element.endIndexAbs() + "] " + element.text();
+    }
+}